@@ -0,0 +1,63 @@
+package nlScript.benchmarks;
+
+import nlScript.ParseException;
+import nlScript.Parser;
+import nlScript.core.Autocompletion;
+import nlScript.ui.ACProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of <code>ACProvider.getAutocompletions()</code> for a single keystroke at the end of a generated
+ * program, i.e. what the editor does while the user types. Each invocation alternately adds and removes one
+ * character, so that <code>ACProvider</code> re-parses the edited line only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutocompletionBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int nLines;
+
+	@Param({ "false", "true" })
+	public boolean lightweightAutocompletion;
+
+	private ACProvider provider;
+	private String[] texts;
+	private int keystroke = 0;
+
+	@Setup
+	public void setup() throws ParseException {
+		Parser parser = Grammars.create(100);
+		parser.setLightweightAutocompletion(lightweightAutocompletion);
+		String program = Grammars.generateProgram(parser, nLines);
+		texts = new String[] {
+				program + "Set the drawing col",
+				program + "Set the drawing colo"
+		};
+		provider = new ACProvider(parser);
+		provider.getAutocompletions(texts[0]);
+	}
+
+	@Benchmark
+	public List<Autocompletion> keystroke() throws ParseException {
+		keystroke = 1 - keystroke;
+		return provider.getAutocompletions(texts[keystroke]);
+	}
+}
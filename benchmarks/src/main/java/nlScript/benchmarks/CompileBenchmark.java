@@ -0,0 +1,37 @@
+package nlScript.benchmarks;
+
+import nlScript.CompiledGrammar;
+import nlScript.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to define a growing number of sentences with <code>Parser.defineSentence()</code> and to compile them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompileBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int nSentences;
+
+	@Benchmark
+	public CompiledGrammar defineAndCompile() {
+		Parser parser = Grammars.create(nSentences);
+		return parser.compile();
+	}
+}
@@ -0,0 +1,59 @@
+package nlScript.benchmarks;
+
+import nlScript.Parser;
+import nlScript.core.GeneratorHints;
+import nlScript.ebnf.NamedRule;
+
+/**
+ * The grammar and the generated programs the benchmarks operate on.
+ */
+final class Grammars {
+
+	private Grammars() {
+	}
+
+	/**
+	 * Creates a parser with a few sentences using custom and built-in types, and <code>nSteps</code>
+	 * additional sentences which only differ in their literal text.
+	 */
+	static Parser create(int nSteps) {
+		Parser parser = new Parser();
+		parser.defineType("my-color", "rgb({red:int}, {green:int}, {blue:int})", pn -> null);
+		parser.defineType("my-color", "white", pn -> null);
+		parser.defineType("my-color", "black", pn -> null);
+		parser.defineSentence("Set the drawing color to {color:my-color}.", pn -> null);
+		NamedRule blur = parser.defineSentence("Apply gaussian blurring with a standard deviation of {stddev:float} pixel(s).", pn -> null);
+		parser.setGeneratorHints(blur, "stddev", GeneratorHints.from(
+				GeneratorHints.Key.MIN_VALUE, 0f,
+				GeneratorHints.Key.MAX_VALUE, 10f,
+				GeneratorHints.Key.DECIMAL_PLACES, 2));
+		parser.defineSentence("Wait for {duration:int} seconds.", pn -> null);
+		parser.defineSentence("Open the image {name:[a-z]:3-8}.", pn -> null);
+		for(int i = 0; i < nSteps; i++)
+			parser.defineSentence("Run step " + i + " with {value:int} repetitions.", pn -> null);
+		return parser;
+	}
+
+	/**
+	 * Generates a program of <code>nLines</code> random sentences with <code>Parser.generate()</code>,
+	 * one per line.
+	 */
+	static String generateProgram(Parser parser, int nLines) {
+		parser.compile();
+		// one sentence per generation, without leading or trailing line breaks
+		GeneratorHints none = GeneratorHints.from(GeneratorHints.Key.MAX_NUMBER, 0);
+		parser.PROGRAM.setGeneratorHints(GeneratorHints.from(GeneratorHints.Key.MAX_NUMBER, 1));
+		parser.PROGRAM.setChildGeneratorHints("open", none);
+		parser.PROGRAM.setChildGeneratorHints("close", none);
+		StringBuilder program = new StringBuilder();
+		int n = 0;
+		while(n < nLines) {
+			String sentence = parser.generate().toString().trim();
+			if(sentence.isEmpty())
+				continue;
+			program.append(sentence).append('\n');
+			n++;
+		}
+		return program.toString();
+	}
+}
@@ -0,0 +1,51 @@
+package nlScript.benchmarks;
+
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of <code>Parser.parse()</code> for generated programs of different numbers of lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int nLines;
+
+	@Param({ "false", "true" })
+	public boolean memoization;
+
+	private Parser parser;
+	private String program;
+
+	@Setup
+	public void setup() {
+		parser = Grammars.create(100);
+		parser.setMemoization(memoization);
+		program = Grammars.generateProgram(parser, nLines);
+	}
+
+	@Benchmark
+	public ParsedNode parse() throws ParseException {
+		return parser.parse(program, null);
+	}
+}
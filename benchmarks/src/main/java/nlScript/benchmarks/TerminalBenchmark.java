@@ -0,0 +1,87 @@
+package nlScript.benchmarks;
+
+import nlScript.core.Lexer;
+import nlScript.core.Matcher;
+import nlScript.core.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>Terminal.matches()</code> for the kinds of terminals grammars consist of, each matching successfully
+ * at the start of the input and failing in the middle of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminalBenchmark {
+
+	private static final String INPUT = "Apply gaussian blurring with a standard deviation of 2.5 pixel(s).";
+
+	private final Lexer lexer = new Lexer(INPUT);
+
+	private final Terminal literal = Terminal.literal("Apply gaussian blurring with a standard deviation of ");
+	private final Terminal characterClass = Terminal.characterClass("[a-zA-Z]");
+	private final Terminal negatedCharacterClass = Terminal.characterClass("[^0-9]");
+
+	private Matcher match(Terminal terminal, int pos) {
+		lexer.setPosition(pos);
+		return terminal.matches(lexer);
+	}
+
+	@Benchmark
+	public Matcher literalSuccess() {
+		return match(literal, 0);
+	}
+
+	@Benchmark
+	public Matcher literalFailure() {
+		return match(literal, 6);
+	}
+
+	@Benchmark
+	public Matcher digitSuccess() {
+		return match(Terminal.DIGIT, 53);
+	}
+
+	@Benchmark
+	public Matcher digitFailure() {
+		return match(Terminal.DIGIT, 0);
+	}
+
+	@Benchmark
+	public Matcher letter() {
+		return match(Terminal.LETTER, 0);
+	}
+
+	@Benchmark
+	public Matcher characterClassSuccess() {
+		return match(characterClass, 0);
+	}
+
+	@Benchmark
+	public Matcher characterClassFailure() {
+		return match(characterClass, 53);
+	}
+
+	@Benchmark
+	public Matcher negatedCharacterClass() {
+		return match(negatedCharacterClass, 0);
+	}
+
+	@Benchmark
+	public Matcher endOfInput() {
+		return match(Terminal.END_OF_INPUT, INPUT.length());
+	}
+}
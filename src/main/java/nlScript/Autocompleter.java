@@ -77,6 +77,13 @@ public interface Autocompleter {
 
 			Autocompletion.EntireSequence entireSequenceCompletion = new Autocompletion.EntireSequence(pn);
 
+			// within CompiledGrammar.parse(), use the snapshot's grammar and a cache private to the call
+			ParseContext context = ((ParsedNode) pn).getContext();
+			boolean compiled = context != null && context.bnf != null;
+			HashMap<String, ArrayList<Autocompletion>> symbol2Autocompletion = compiled
+					? context.symbol2Autocompletion
+					: this.symbol2Autocompletion;
+
 			for (Named<?> child : children) {
 				String key = child.getSymbol() + ":" + child.getName();
 				ArrayList<Autocompletion> autocompletionsForChild = symbol2Autocompletion.get(key);
@@ -85,14 +92,14 @@ public interface Autocompleter {
 					continue;
 				}
 
-				BNF bnf = new BNF(ebnf.getBNF());
+				BNF bnf = new BNF(compiled ? context.bnf : ebnf.getBNF());
 
-				Sequence newSequence = new Sequence(null, child);
+				Sequence newSequence = new Sequence(Rule.anonymousTarget("sequence", bnf, child), child);
 				newSequence.createBNF(bnf);
 
 				bnf.removeStartProduction();
 				bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, newSequence.getTarget()));
-				RDParser parser = new RDParser(bnf, new Lexer(""), EBNFParsedNodeFactory.INSTANCE);
+				RDParser parser = new RDParser(bnf, new Lexer(""), new EBNFParsedNodeFactory(context));
 
 				autocompletionsForChild = new ArrayList<>();
 				try {
@@ -0,0 +1,94 @@
+package nlScript;
+
+import nlScript.core.Autocompletion;
+import nlScript.core.BNF;
+import nlScript.core.CancellationToken;
+import nlScript.core.Lexer;
+import nlScript.core.ParseBudget;
+import nlScript.core.ParserEngine;
+import nlScript.ebnf.EBNFParsedNodeFactory;
+import nlScript.ebnf.EBNFParser;
+import nlScript.ebnf.EBNFProduction;
+import nlScript.ebnf.Rule;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A snapshot of a <code>Parser</code>'s grammar, as returned by <code>Parser.compile()</code>.
+ *
+ * The snapshot owns a copy of the <code>BNF</code>, with copies of its productions and frozen copies of their
+ * rules (see <code>Rule.freeze()</code>), which is never modified, so that <code>parse()</code> can be called
+ * from several threads at the same time. Each call only uses its own state, which it passes to the parsed
+ * nodes as their <code>ParseContext</code>, including the cache of autocompletions used by
+ * <code>Autocompleter.EntireSequenceCompleter</code>. Later changes to the <code>Parser</code> and its rules
+ * do not affect the snapshot.
+ */
+public final class CompiledGrammar {
+
+	private final BNF bnf;
+
+	private final ParserEngine engine;
+
+	private final boolean lightweightAutocompletion;
+
+	private final boolean memoization;
+
+	private final ParseBudget parseBudget;
+
+	private final EBNFParser.ParseStartListener[] parseStartListeners;
+
+	CompiledGrammar(BNF bnf, ParserEngine engine, boolean lightweightAutocompletion, boolean memoization, ParseBudget parseBudget, List<EBNFParser.ParseStartListener> parseStartListeners) {
+		// copy the productions and their rules, which the parser keeps changing
+		IdentityHashMap<Rule, Rule> frozenRules = new IdentityHashMap<>();
+		this.bnf = new BNF(bnf, p -> {
+			if(!(p instanceof EBNFProduction))
+				return p.copy();
+			Rule rule = ((EBNFProduction) p).getRule();
+			return ((EBNFProduction) p).copy(rule != null ? frozenRules.computeIfAbsent(rule, Rule::freeze) : null);
+		});
+		this.bnf.compileFirstSets();
+		this.engine = engine;
+		this.lightweightAutocompletion = lightweightAutocompletion;
+		this.memoization = memoization;
+		this.parseBudget = parseBudget;
+		this.parseStartListeners = parseStartListeners.toArray(new EBNFParser.ParseStartListener[0]);
+	}
+
+	public ParserEngine getEngine() {
+		return engine;
+	}
+
+	public boolean isLightweightAutocompletion() {
+		return lightweightAutocompletion;
+	}
+
+	public boolean isMemoization() {
+		return memoization;
+	}
+
+	public ParseBudget getParseBudget() {
+		return parseBudget;
+	}
+
+	public ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions) throws ParseException {
+		return parse(text, autocompletions, null);
+	}
+
+	/**
+	 * Parses <code>text</code>, throwing a <code>java.util.concurrent.CancellationException</code> as soon as
+	 * <code>cancellationToken</code> is cancelled.
+	 */
+	public ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions, CancellationToken cancellationToken) throws ParseException {
+		EBNFParser rdParser = new EBNFParser(bnf, new Lexer(text), new EBNFParsedNodeFactory(ParseContext.forCompiledGrammar(bnf)));
+		rdParser.setEngine(engine);
+		rdParser.setLightweightAutocompletion(lightweightAutocompletion);
+		rdParser.setMemoization(memoization);
+		rdParser.setParseBudget(parseBudget);
+		rdParser.setCancellationToken(cancellationToken);
+		for(EBNFParser.ParseStartListener l : parseStartListeners)
+			rdParser.addParseStartListener(l);
+		return (ParsedNode) rdParser.parse(autocompletions);
+	}
+}
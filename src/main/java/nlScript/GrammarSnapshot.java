@@ -0,0 +1,401 @@
+package nlScript;
+
+import nlScript.core.BNF;
+import nlScript.core.Named;
+import nlScript.core.NonTerminal;
+import nlScript.core.Symbol;
+import nlScript.core.Terminal;
+import nlScript.ebnf.EBNF;
+import nlScript.ebnf.Join;
+import nlScript.ebnf.NamedRule;
+import nlScript.ebnf.Rule;
+import nlScript.util.Range;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Binary snapshot of the types and sentences defined in a <code>Parser</code>, so that a parser can be
+ * restored without parsing its patterns again.
+ *
+ * A snapshot stores the rules the definitions added to the target grammar, i.e. their kind, target
+ * symbol, child symbols, names and cardinalities, in the order they were created, with all strings (symbol
+ * names, patterns, ...) stored once in a string table and referred to by index. Reading it replays them on
+ * a new <code>Parser</code>, with new unique names for anonymous symbols. Evaluators, autocompleters and
+ * generators are code and can't be stored; they are re-bound through <code>Bindings</code>, using the type
+ * and pattern of each definition as its stable name. Built-in inline and entire-sequence autocompletion is
+ * restored automatically.
+ *
+ * Only definitions made through patterns (<code>defineType()</code>, <code>defineSentence()</code> and their
+ * variants) are recorded, not rules added to the target grammar directly, and only if recording was enabled
+ * with <code>Parser.setRecording()</code> before the first definition.
+ */
+public final class GrammarSnapshot {
+
+	private static final int MAGIC = 0x6e6c5347; // "nlSG"
+
+	private static final int VERSION = 1;
+
+	private static final byte LIST        = 1;
+	private static final byte TUPLE       = 2;
+	private static final byte QUANTIFIER  = 3;
+	private static final byte CARDINALITY = 4;
+	private static final byte DEFINE      = 5;
+	private static final byte UNDEFINE    = 6;
+
+	private static final byte SYMBOL          = 1;
+	private static final byte LITERAL         = 2;
+	private static final byte CHARACTER_CLASS = 3;
+
+	static final byte NO_AUTOCOMPLETER              = 0;
+	static final byte INLINE_AUTOCOMPLETER          = 1;
+	static final byte ENTIRE_SEQUENCE_AUTOCOMPLETER = 2;
+	static final byte CUSTOM_AUTOCOMPLETER          = 3;
+
+	/**
+	 * Provides the code of the definitions in a snapshot, identified by their type and pattern.
+	 */
+	public interface Bindings {
+
+		/**
+		 * Returns the evaluator for the given definition, or null.
+		 */
+		Evaluator getEvaluator(String type, String pattern);
+
+		/**
+		 * Returns the autocompleter for the given definition, or null to use the one the definition was
+		 * created with, if it was a built-in one.
+		 */
+		default Autocompleter getAutocompleter(String type, String pattern) {
+			return null;
+		}
+
+		/**
+		 * Called with the restored rule of each definition, e.g. to set generators or generator hints.
+		 */
+		default void bind(String type, String pattern, NamedRule rule) {
+		}
+	}
+
+	private GrammarSnapshot() {
+	}
+
+	/**
+	 * Writes the definitions of <code>parser</code> to <code>out</code>. Throws an
+	 * <code>IllegalStateException</code> if <code>parser</code> doesn't record its definitions.
+	 */
+	public static void write(Parser parser, OutputStream out) throws IOException {
+		Recorder recorder = parser.getRecorder();
+		if(recorder == null)
+			throw new IllegalStateException("Parser does not record its definitions, see Parser.setRecording()");
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeInt(recorder.strings.size());
+		for(String str : recorder.strings)
+			data.writeUTF(str);
+		data.writeInt(recorder.nEntries);
+		recorder.bytes.writeTo(data);
+		data.flush();
+	}
+
+	/**
+	 * Creates a new <code>Parser</code> with the definitions read from <code>in</code>. The new parser doesn't
+	 * record its definitions; to write it again, read into a recording parser instead.
+	 */
+	public static Parser read(InputStream in, Bindings bindings) throws IOException {
+		Parser parser = new Parser();
+		read(in, parser, bindings);
+		return parser;
+	}
+
+	/**
+	 * Adds the definitions read from <code>in</code> to <code>parser</code>, recording them if
+	 * <code>parser</code> records its definitions.
+	 */
+	public static void read(InputStream in, Parser parser, Bindings bindings) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC)
+			throw new IOException("Not a grammar snapshot");
+		int version = data.readShort();
+		if(version != VERSION)
+			throw new IOException("Unsupported grammar snapshot version: " + version);
+
+		String[] strings = new String[data.readInt()];
+		for(int i = 0; i < strings.length; i++)
+			strings[i] = data.readUTF();
+		Input input = new Input(data, strings);
+
+		EBNF grammar = parser.getTargetGrammar();
+		Recorder recorder = parser.getRecorder();
+		BNF bnf = grammar.getBNF();
+		int nEntries = data.readInt();
+		bnf.beginBulkInsert();
+		try {
+			for(int i = 0; i < nEntries; i++) {
+				byte op = data.readByte();
+				switch(op) {
+					case LIST: {
+						String target = input.readString();
+						Named<?> entry = input.readNamed(grammar);
+						Rule list = grammar.list(null, entry);
+						input.renamed.put(target, list.getTarget());
+						if(recorder != null)
+							recorder.list(list.getTarget(), entry);
+						break;
+					}
+					case TUPLE: {
+						String target = input.readString();
+						Named<?> entry = input.readNamed(grammar);
+						String[] names = new String[input.readInt()];
+						for(int n = 0; n < names.length; n++)
+							names[n] = input.readString();
+						Rule tuple = grammar.tuple(null, entry, names);
+						input.renamed.put(target, tuple.getTarget());
+						if(recorder != null)
+							recorder.tuple(tuple.getTarget(), entry, names);
+						break;
+					}
+					case QUANTIFIER: {
+						String target = input.readString();
+						Named<?> child = input.readNamed(grammar);
+						Range range = new Range(input.readInt(), input.readInt());
+						boolean inline = data.readBoolean();
+						Rule rule = quantify(grammar, child, range);
+						input.renamed.put(target, rule.getTarget());
+						rule.setAutocompleter(inline ? Autocompleter.DEFAULT_INLINE_AUTOCOMPLETER : null);
+						if(recorder != null)
+							recorder.quantifier(rule.getTarget(), child, range, inline);
+						break;
+					}
+					case CARDINALITY: {
+						NonTerminal target = (NonTerminal) input.resolve(grammar, input.readString());
+						Range range = new Range(input.readInt(), input.readInt());
+						for(Rule rule : grammar.getRules(target))
+							if(rule instanceof Join)
+								((Join) rule).setCardinality(range);
+						if(recorder != null)
+							recorder.cardinality(target, range);
+						break;
+					}
+					case DEFINE: {
+						String type = input.readString();
+						String pattern = input.readString();
+						byte autocompleterKind = data.readByte();
+						Named<?>[] rhs = new Named<?>[input.readInt()];
+						for(int n = 0; n < rhs.length; n++)
+							rhs[n] = input.readNamed(grammar);
+						Autocompleter autocompleter = bindings.getAutocompleter(type, pattern);
+						if(autocompleter == null)
+							autocompleter = parser.makeAutocompleter(autocompleterKind);
+						NamedRule rule = parser.defineType(type, pattern, rhs, bindings.getEvaluator(type, pattern), autocompleter);
+						bindings.bind(type, pattern, rule);
+						break;
+					}
+					case UNDEFINE:
+						parser.undefineType(input.readString());
+						break;
+					default:
+						throw new IOException("Corrupt grammar snapshot: unknown entry " + op);
+				}
+			}
+		} finally {
+			bnf.endBulkInsert();
+		}
+	}
+
+	private static Rule quantify(EBNF grammar, Named<?> child, Range range) {
+		if(range.equals(Range.STAR))     return grammar.star(null, child);
+		if(range.equals(Range.PLUS))     return grammar.plus(null, child);
+		if(range.equals(Range.OPTIONAL)) return grammar.optional(null, child);
+		return grammar.repeat(null, child, range.getLower(), range.getUpper());
+	}
+
+	private static final class Input {
+
+		private final DataInputStream data;
+
+		private final String[] strings;
+
+		// the anonymous symbols in the snapshot, which are re-created with new unique names
+		private final HashMap<String, Symbol> renamed = new HashMap<>();
+
+		Input(DataInputStream data, String[] strings) {
+			this.data = data;
+			this.strings = strings;
+		}
+
+		int readInt() throws IOException {
+			int value = 0;
+			for(int shift = 0; ; shift += 7) {
+				int b = data.readUnsignedByte();
+				value |= (b & 0x7f) << shift;
+				if((b & 0x80) == 0)
+					return value;
+			}
+		}
+
+		String readString() throws IOException {
+			int idx = readInt();
+			if(idx >= strings.length)
+				throw new IOException("Corrupt grammar snapshot: unknown string " + idx);
+			return strings[idx];
+		}
+
+		Named<?> readNamed(EBNF grammar) throws IOException {
+			String name = readString();
+			byte kind = data.readByte();
+			String symbol = readString();
+			switch(kind) {
+				case SYMBOL:          return new Named<>(resolve(grammar, symbol), name);
+				case LITERAL:         return new Named<>(Terminal.literal(symbol), name);
+				case CHARACTER_CLASS: return new Named<>(Terminal.characterClass(symbol), name);
+				default:
+					throw new IOException("Corrupt grammar snapshot: unknown symbol kind " + kind);
+			}
+		}
+
+		Symbol resolve(EBNF grammar, String symbol) throws IOException {
+			Symbol ret = renamed.get(symbol);
+			if(ret == null)
+				ret = grammar.getSymbol(symbol);
+			if(ret == null)
+				throw new IOException("Corrupt grammar snapshot: unknown symbol '" + symbol + "'");
+			return ret;
+		}
+	}
+
+	/**
+	 * Records the definitions of a <code>Parser</code> in the format of the snapshot.
+	 */
+	static final class Recorder {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private final DataOutputStream data = new DataOutputStream(bytes);
+
+		private final ArrayList<String> strings = new ArrayList<>();
+
+		private final HashMap<String, Integer> stringIndices = new HashMap<>();
+
+		private int nEntries = 0;
+
+		void list(NonTerminal target, Named<?> entry) {
+			try {
+				data.writeByte(LIST);
+				writeString(target.getSymbol());
+				writeNamed(entry);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		void tuple(NonTerminal target, Named<?> entry, String[] names) {
+			try {
+				data.writeByte(TUPLE);
+				writeString(target.getSymbol());
+				writeNamed(entry);
+				writeInt(names.length);
+				for(String name : names)
+					writeString(name);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		void quantifier(NonTerminal target, Named<?> child, Range range, boolean inlineAutocompleter) {
+			try {
+				data.writeByte(QUANTIFIER);
+				writeString(target.getSymbol());
+				writeNamed(child);
+				writeInt(range.getLower());
+				writeInt(range.getUpper());
+				data.writeBoolean(inlineAutocompleter);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		void cardinality(NonTerminal target, Range range) {
+			try {
+				data.writeByte(CARDINALITY);
+				writeString(target.getSymbol());
+				writeInt(range.getLower());
+				writeInt(range.getUpper());
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		void define(String type, String pattern, Named<?>[] rhs, byte autocompleterKind) {
+			try {
+				data.writeByte(DEFINE);
+				writeString(type);
+				writeString(pattern);
+				data.writeByte(autocompleterKind);
+				writeInt(rhs.length);
+				for(Named<?> n : rhs)
+					writeNamed(n);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		void undefine(String type) {
+			try {
+				data.writeByte(UNDEFINE);
+				writeString(type);
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			nEntries++;
+		}
+
+		// unsigned variable-length integer, 7 bits per byte
+		private void writeInt(int value) throws IOException {
+			while((value & ~0x7f) != 0) {
+				data.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data.writeByte(value);
+		}
+
+		private void writeString(String str) throws IOException {
+			Integer idx = stringIndices.get(str);
+			if(idx == null) {
+				idx = strings.size();
+				strings.add(str);
+				stringIndices.put(str, idx);
+			}
+			writeInt(idx);
+		}
+
+		private void writeNamed(Named<?> named) throws IOException {
+			writeString(named.getName());
+			Symbol symbol = named.getSymbol();
+			if(symbol instanceof Terminal.Literal) {
+				data.writeByte(LITERAL);
+				writeString(((Terminal.Literal) symbol).getLiteral());
+			}
+			else if(symbol instanceof Terminal.CharacterClass) {
+				data.writeByte(CHARACTER_CLASS);
+				writeString(symbol.getSymbol());
+			}
+			else {
+				data.writeByte(SYMBOL);
+				writeString(symbol.getSymbol());
+			}
+		}
+	}
+}
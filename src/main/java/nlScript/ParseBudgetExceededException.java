@@ -0,0 +1,29 @@
+package nlScript;
+
+import nlScript.core.DefaultParsedNode;
+import nlScript.core.RDParser;
+
+/**
+ * Thrown when a parse exceeds its <code>ParseBudget</code>. <code>getRoot()</code> returns the tree of the
+ * best (partial) result found until then, or <code>null</code> if there was none.
+ */
+public class ParseBudgetExceededException extends ParseException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String reason;
+
+	public ParseBudgetExceededException(DefaultParsedNode root, DefaultParsedNode lastTerminal, RDParser parser, String reason) {
+		super(root, lastTerminal, parser);
+		this.reason = reason;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String getError() {
+		return "Parse budget exceeded: " + reason;
+	}
+}
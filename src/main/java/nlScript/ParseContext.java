@@ -0,0 +1,43 @@
+package nlScript;
+
+import nlScript.core.Autocompletion;
+import nlScript.core.BNF;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The state of a single parse, which the <code>ParsedNode</code>s it creates refer to (see
+ * <code>ParsedNode.getContext()</code>), so that evaluators and autocompleters can use it without sharing
+ * it between parses running at the same time.
+ */
+public final class ParseContext {
+
+	// the parser whose target grammar the evaluators of the pattern grammar extend, null for other parses
+	final Parser parser;
+
+	// the grammar and the cache of autocompletions used by Autocompleter.EntireSequenceCompleter,
+	// null to use the ones of the completer
+	final BNF bnf;
+	final HashMap<String, ArrayList<Autocompletion>> symbol2Autocompletion;
+
+	private ParseContext(Parser parser, BNF bnf) {
+		this.parser = parser;
+		this.bnf = bnf;
+		this.symbol2Autocompletion = bnf != null ? new HashMap<>() : null;
+	}
+
+	/**
+	 * The context for parsing a pattern of <code>parser</code>.
+	 */
+	static ParseContext forPattern(Parser parser) {
+		return new ParseContext(parser, null);
+	}
+
+	/**
+	 * The context for parsing with the grammar of a <code>CompiledGrammar</code>.
+	 */
+	static ParseContext forCompiledGrammar(BNF bnf) {
+		return new ParseContext(null, bnf);
+	}
+}
@@ -52,13 +52,17 @@ public class ParseException extends Exception {
 		final Lexer lexer = parser.getLexer();
 		final BNF grammar = parser.getGrammar();
 
-		int errorPos = failedTerminal.getMatcher().pos + failedTerminal.getMatcher().parsed.length() - 1;
+		int errorPos = failedTerminal.getMatcher().end - 1;
 
 		// the character at last.matcher.pos failed, everything before must have been working
-		String workingText = lexer.substring(0, failedTerminal.getMatcher().pos);
+		CharSequence workingText = lexer.subSequence(0, failedTerminal.getMatcher().pos);
 		// create a new parser and collect the autocompletions
 		Lexer workingLexer = new Lexer(workingText);
 		RDParser parser2 = new RDParser(grammar, workingLexer, parser.getParsedNodeFactory());
+		parser2.setEngine(parser.getEngine());
+		parser2.setLightweightAutocompletion(parser.isLightweightAutocompletion());
+		parser2.setMemoization(parser.isMemoization());
+		parser2.setParseBudget(parser.getParseBudget());
 		ArrayList<Autocompletion> expectations = new ArrayList<>();
 		try {
 			parser2.parse(expectations);
@@ -66,14 +70,29 @@ public class ParseException extends Exception {
 			return "Error at position " + errorPos;
 		}
 
-		String[] lines = lexer.substring(0, errorPos + 1).split("\\r?\\n|\\r");
-		int errorLine = lines.length - 1;
-		int errorPosInLastLine = lines[errorLine].length() - 1;
+		// find the line of the error, ignoring trailing line breaks
+		CharSequence text = lexer.subSequence(0, errorPos + 1);
+		int end = text.length();
+		while(end > 0 && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r'))
+			end--;
+		int errorLine = 0;
+		int lineStart = 0;
+		for(int i = 0; i < end; i++) {
+			char c = text.charAt(i);
+			if(c == '\n' || c == '\r') {
+				if(c == '\r' && i + 1 < end && text.charAt(i + 1) == '\n')
+					i++;
+				errorLine++;
+				lineStart = i + 1;
+			}
+		}
+		String lastLine = text.subSequence(lineStart, end).toString();
+		int errorPosInLastLine = lastLine.length() - 1;
 
 		StringBuilder errorMessage = new StringBuilder();
 		final String nl = System.lineSeparator();
 		errorMessage.append("Error at position ").append(errorPos).append(" in line ").append(errorLine).append(":").append(nl);
-		errorMessage.append(lines[errorLine]).append(nl);
+		errorMessage.append(lastLine).append(nl);
 		for(int i = 0; i < errorPosInLastLine; i++)
 			errorMessage.append(" ");
 		errorMessage.append("^").append(nl);
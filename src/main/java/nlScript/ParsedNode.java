@@ -10,12 +10,29 @@ import nlScript.core.ParsingState;
 import nlScript.core.Production;
 import nlScript.core.Symbol;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
 public class ParsedNode extends DefaultParsedNode {
 
 	private int nthEntryInParent = 0;
 
+	private final ParseContext context;
+
 	public ParsedNode(Matcher matcher, Symbol symbol, Production production) {
+		this(matcher, symbol, production, null);
+	}
+
+	public ParsedNode(Matcher matcher, Symbol symbol, Production production, ParseContext context) {
 		super(matcher, symbol, production);
+		this.context = context;
+	}
+
+	/**
+	 * @return the context of the parse which created this node, or <code>null</code> if it has none.
+	 */
+	public ParseContext getContext() {
+		return context;
 	}
 
 	public void setNthEntryInParent(int nthEntry) {
@@ -54,10 +71,28 @@ public class ParsedNode extends DefaultParsedNode {
 		return super.getAutocompletion(justCheck);
 	}
 
+	/**
+	 * Notifies the <code>ParseListener</code>s of this node and all its descendants, children before their parents.
+	 */
 	public void notifyListeners() {
-		for(int i = 0; i < numChildren(); i++)
-			((ParsedNode) getChild(i)).notifyListeners();
+		// collect the nodes in reverse post-order, using an explicit stack for deeply nested trees
+		ArrayList<ParsedNode> nodes = new ArrayList<>();
+		ArrayDeque<ParsedNode> todo = new ArrayDeque<>();
+		todo.push(this);
+		while(!todo.isEmpty()) {
+			ParsedNode pn = todo.pop();
+			nodes.add(pn);
+			for(int i = 0; i < pn.numChildren(); i++)
+				todo.push((ParsedNode) pn.getChild(i));
+		}
+		for(int i = nodes.size() - 1; i >= 0; i--)
+			nodes.get(i).notifyListener();
+	}
 
+	/**
+	 * Notifies the <code>ParseListener</code>s of this node only.
+	 */
+	void notifyListener() {
 		ParsingState state = getMatcher().state;
 		if (state != ParsingState.SUCCESSFUL && state != ParsingState.END_OF_INPUT)
 			return;
@@ -4,7 +4,6 @@ import nlScript.core.*;
 import nlScript.ebnf.EBNF;
 import nlScript.ebnf.EBNFCore;
 import nlScript.ebnf.EBNFParser;
-import nlScript.ebnf.Join;
 import nlScript.ebnf.Rule;
 import nlScript.util.RandomInt;
 import nlScript.util.Range;
@@ -12,13 +11,20 @@ import nlScript.ebnf.EBNFParsedNodeFactory;
 import nlScript.ebnf.NamedRule;
 import nlScript.core.GeneratorHints.Key;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 public class Parser {
-	private final EBNF grammar = new EBNF();
+	private final PatternGrammar sharedPatternGrammar = PatternGrammar.shared();
+
+	private PatternGrammar patternGrammar = null;
 
 	private final Terminal LINEBREAK = Terminal.literal("\n");
 
@@ -43,26 +49,48 @@ public class Parser {
 
 	private boolean compiled = false;
 
+	private ParserEngine engine = ParserEngine.DEPTH_FIRST;
+
+	private boolean lightweightAutocompletion = false;
+
+	private boolean memoization = false;
+
+	private ParseBudget parseBudget = ParseBudget.UNLIMITED;
+
+	private ParseStats parseStats = null;
+
+	private GrammarSnapshot.Recorder recorder = null;
+
+	private boolean defined = false;
+
 	public Parser() {
-		QUANTIFIER      = quantifier();
-		IDENTIFIER      = identifier("identifier");
-		VARIABLE_NAME   = variableName();
-		ENTRY_NAME      = entryName();
-		LIST            = list();
-		TUPLE           = tuple();
-		CHARACTER_CLASS = characterClass();
-		TYPE            = type();
-		VARIABLE        = variable();
-		NO_VARIABLE     = noVariable();
-		EXPRESSION      = expression();
+		QUANTIFIER      = sharedPatternGrammar.QUANTIFIER;
+		IDENTIFIER      = sharedPatternGrammar.IDENTIFIER;
+		VARIABLE_NAME   = sharedPatternGrammar.VARIABLE_NAME;
+		ENTRY_NAME      = sharedPatternGrammar.ENTRY_NAME;
+		LIST            = sharedPatternGrammar.LIST;
+		TUPLE           = sharedPatternGrammar.TUPLE;
+		CHARACTER_CLASS = sharedPatternGrammar.CHARACTER_CLASS;
+		TYPE            = sharedPatternGrammar.TYPE;
+		VARIABLE        = sharedPatternGrammar.VARIABLE;
+		NO_VARIABLE     = sharedPatternGrammar.NO_VARIABLE;
+		EXPRESSION      = sharedPatternGrammar.EXPRESSION;
 
 		LINEBREAK_STAR = targetGrammar.star("linebreak-star", LINEBREAK.withName());
 		PROGRAM        = program();
 
 	}
 
+	/**
+	 * Returns the grammar for patterns. Parsers share a single, pre-compiled grammar for patterns, so that
+	 * creating a <code>Parser</code> does not rebuild it; the grammar returned here is a private copy bound to
+	 * this parser's target grammar, which is created on first request and may be modified. Once it exists,
+	 * it is used to parse the patterns of this parser instead of the shared one.
+	 */
 	public EBNF getGrammar() {
-		return grammar;
+		if(patternGrammar == null)
+			patternGrammar = new PatternGrammar(this);
+		return patternGrammar.grammar;
 	}
 
 	public EBNF getTargetGrammar() {
@@ -80,6 +108,12 @@ public class Parser {
 		return defineSentence(pattern, evaluator, autocompleter);
 	}
 
+	/**
+	 * Adds a production to the <code>sentence</code> type. Sentences are indexed by the literal text their
+	 * pattern starts with (see <code>RDParser.setPruning()</code>), so that parsing a line only tries the
+	 * sentences which match its beginning, or which start with a variable. Partially typed beginnings still
+	 * yield the autocompletions of all sentences they are a prefix of.
+	 */
 	public NamedRule defineSentence(String pattern, Evaluator evaluator, Autocompleter autocompleter) {
 		return defineType("sentence", pattern, evaluator, autocompleter);
 	}
@@ -96,21 +130,50 @@ public class Parser {
 	}
 
 	public NamedRule defineType(String type, String pattern, Evaluator evaluator, Autocompleter autocompleter) {
-		grammar.compile(EXPRESSION.getTarget());
-		RDParser parser = new RDParser(
-				grammar.getBNF(),
-				new Lexer(pattern),
-				EBNFParsedNodeFactory.INSTANCE);
-		DefaultParsedNode pn;
+		return defineType(type, pattern, parsePattern(pattern), evaluator, autocompleter);
+	}
+
+	/**
+	 * Defines many sentences at once, like calling <code>defineSentence(pattern, evaluator)</code> for each entry
+	 * of <code>sentences</code>, in iteration order, but with the productions added in bulk, so that the time
+	 * to define n sentences is linear in n.
+	 */
+	public List<NamedRule> defineSentences(Map<String, Evaluator> sentences) {
+		return defineTypes("sentence", sentences);
+	}
+
+	/**
+	 * Defines many patterns for <code>type</code> at once, see <code>defineSentences()</code>.
+	 */
+	public List<NamedRule> defineTypes(String type, Map<String, Evaluator> patterns) {
+		ArrayList<NamedRule> ret = new ArrayList<>(patterns.size());
+		BNF bnf = targetGrammar.getBNF();
+		bnf.beginBulkInsert();
 		try {
-			pn = parser.parse();
-		} catch (ParseException e) {
-			throw new RuntimeException("Parsing failed", e);
+			for(Map.Entry<String, Evaluator> pattern : patterns.entrySet())
+				ret.add(defineType(type, pattern.getKey(), parsePattern(pattern.getKey()), pattern.getValue(), null));
+		} finally {
+			bnf.endBulkInsert();
 		}
-		if(pn.getMatcher().state != ParsingState.SUCCESSFUL)
-			throw new RuntimeException("Parsing failed");
-		Named<?>[] rhs = (Named<?>[]) pn.evaluate();
+		return ret;
+	}
 
+	/**
+	 * Parses <code>pattern</code> with the grammar for patterns: the private one if <code>getGrammar()</code>
+	 * was called, the shared one otherwise.
+	 */
+	private Named<?>[] parsePattern(String pattern) {
+		defined = true;
+		if(patternGrammar == null)
+			return sharedPatternGrammar.parse(pattern, this);
+		patternGrammar.grammar.compile(EXPRESSION.getTarget());
+		return patternGrammar.parse(pattern, this);
+	}
+
+	NamedRule defineType(String type, String pattern, Named<?>[] rhs, Evaluator evaluator, Autocompleter autocompleter) {
+		defined = true;
+		if(recorder != null)
+			recorder.define(type, pattern, rhs, autocompleterKind(autocompleter));
 		Rule newRule = targetGrammar.sequence(type, rhs);
 		if(evaluator != null)
 			newRule.setEvaluator(evaluator);
@@ -123,28 +186,162 @@ public class Parser {
 	public void undefineType(String type) {
 		NonTerminal unitsSymbol = (NonTerminal) targetGrammar.getSymbol(type);
 		targetGrammar.removeRules(unitsSymbol);
+		if(recorder != null)
+			recorder.undefine(type);
 		compiled = false;
 	}
 
-	public void compile() {
-		compile(targetGrammar.getSymbol("program"));
+	/**
+	 * Enables recording the definitions of this parser, so that they can be written with
+	 * <code>GrammarSnapshot.write()</code>. Disabled by default, because the recorded definitions are kept in
+	 * memory for the lifetime of the parser. Must be enabled before the first type or sentence is defined.
+	 */
+	public void setRecording(boolean recording) {
+		if(recording == isRecording())
+			return;
+		if(recording && defined)
+			throw new IllegalStateException("Recording must be enabled before the first definition");
+		recorder = recording ? new GrammarSnapshot.Recorder() : null;
+	}
+
+	public boolean isRecording() {
+		return recorder != null;
+	}
+
+	/**
+	 * Returns the recorder of this parser's definitions, or <code>null</code> if it doesn't record them.
+	 */
+	GrammarSnapshot.Recorder getRecorder() {
+		return recorder;
+	}
+
+	private static byte autocompleterKind(Autocompleter autocompleter) {
+		if(autocompleter == null)
+			return GrammarSnapshot.NO_AUTOCOMPLETER;
+		if(autocompleter == Autocompleter.DEFAULT_INLINE_AUTOCOMPLETER)
+			return GrammarSnapshot.INLINE_AUTOCOMPLETER;
+		if(autocompleter instanceof Autocompleter.EntireSequenceCompleter)
+			return GrammarSnapshot.ENTIRE_SEQUENCE_AUTOCOMPLETER;
+		return GrammarSnapshot.CUSTOM_AUTOCOMPLETER;
+	}
+
+	/**
+	 * Re-creates a built-in autocompleter of the given kind (see <code>autocompleterKind()</code>), or returns
+	 * null for custom ones.
+	 */
+	Autocompleter makeAutocompleter(byte kind) {
+		switch(kind) {
+			case GrammarSnapshot.INLINE_AUTOCOMPLETER:          return Autocompleter.DEFAULT_INLINE_AUTOCOMPLETER;
+			case GrammarSnapshot.ENTIRE_SEQUENCE_AUTOCOMPLETER: return new Autocompleter.EntireSequenceCompleter(targetGrammar, symbol2Autocompletion);
+			default:                                            return null;
+		}
+	}
+
+	public CompiledGrammar compile() {
+		return compile(targetGrammar.getSymbol("program"));
 	}
 
-	public void compile(Symbol symbol) {
+	/**
+	 * Compiles the grammar with <code>symbol</code> as top-level symbol, and returns an immutable snapshot
+	 * of it, which parses with the current engine, settings and parse start listeners, and can
+	 * be shared between threads.
+	 */
+	public CompiledGrammar compile(Symbol symbol) {
 		targetGrammar.compile(symbol);
 		compiled = true;
+		return new CompiledGrammar(targetGrammar.getBNF(), engine, lightweightAutocompletion, memoization, parseBudget, parseStartListeners);
+	}
+
+	/**
+	 * Sets the engine used by <code>parse()</code>, e.g. <code>ParserEngine.EARLEY</code> for heavily
+	 * ambiguous grammars. Both engines produce the same results.
+	 */
+	public void setEngine(ParserEngine engine) {
+		this.engine = engine;
+	}
+
+	public ParserEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Enables building only the paths to the autocompleting nodes instead of entire parse trees when
+	 * collecting autocompletions, see <code>RDParser.setLightweightAutocompletion()</code>.
+	 */
+	public void setLightweightAutocompletion(boolean lightweightAutocompletion) {
+		this.lightweightAutocompletion = lightweightAutocompletion;
+	}
+
+	public boolean isLightweightAutocompletion() {
+		return lightweightAutocompletion;
+	}
+
+	/**
+	 * Enables skipping expansions which failed before at the same position, see
+	 * <code>RDParser.setMemoization()</code>.
+	 */
+	public void setMemoization(boolean memoization) {
+		this.memoization = memoization;
+	}
+
+	public boolean isMemoization() {
+		return memoization;
+	}
+
+	/**
+	 * Limits the work of each parse, see <code>RDParser.setParseBudget()</code>. With <code>parseParallel()</code>,
+	 * the budget applies to each line.
+	 */
+	public void setParseBudget(ParseBudget parseBudget) {
+		this.parseBudget = parseBudget == null ? ParseBudget.UNLIMITED : parseBudget;
+	}
+
+	public ParseBudget getParseBudget() {
+		return parseBudget;
+	}
+
+	/**
+	 * Sets the <code>ParseStats</code> which are filled by <code>parse()</code> and <code>reparse()</code>,
+	 * <code>null</code> (by default) to not collect statistics. After each call, they describe the parse which
+	 * produced the result (or the exception). <code>parseParallel()</code> does not collect statistics.
+	 */
+	public void setParseStats(ParseStats parseStats) {
+		this.parseStats = parseStats;
 	}
 
-	public ParsedNode parse(String text, ArrayList<Autocompletion> autocompletions) throws ParseException {
+	public ParseStats getParseStats() {
+		return parseStats;
+	}
+
+	public ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions) throws ParseException {
 		return this.parse(text, autocompletions, false);
 	}
 
-	public ParsedNode parse(String text, ArrayList<Autocompletion> autocompletions, boolean debug) throws ParseException {
+	public ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions, boolean debug) throws ParseException {
+		return parse(text, autocompletions, debug, null);
+	}
+
+	/**
+	 * Parses <code>text</code> like <code>parse(text, autocompletions)</code>, but throws a
+	 * <code>java.util.concurrent.CancellationException</code> as soon as <code>cancellationToken</code>
+	 * is cancelled, e.g. because the text changed again while it was being parsed.
+	 */
+	public ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions, CancellationToken cancellationToken) throws ParseException {
+		return parse(text, autocompletions, false, cancellationToken);
+	}
+
+	private ParsedNode parse(CharSequence text, ArrayList<Autocompletion> autocompletions, boolean debug, CancellationToken cancellationToken) throws ParseException {
 		if(!compiled)
 			compile();
 		symbol2Autocompletion.clear();
 		BNF grammar = targetGrammar.getBNF();
 		EBNFParser rdParser = new EBNFParser(grammar, new Lexer(text));
+		rdParser.setEngine(engine);
+		rdParser.setLightweightAutocompletion(lightweightAutocompletion);
+		rdParser.setMemoization(memoization);
+		rdParser.setParseBudget(parseBudget);
+		rdParser.setCancellationToken(cancellationToken);
+		rdParser.setParseStats(parseStats);
 		if(debug) {
 			ParseDebugger debugger = new ParseDebugger();
 			rdParser.setParseDebugger(debugger);
@@ -153,6 +350,229 @@ public class Parser {
 		return (ParsedNode) rdParser.parse(autocompletions);
 	}
 
+	public ParsedNode parseParallel(String text) throws ParseException {
+		return parseParallel(text, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses each line of <code>text</code> as a sentence on a thread of <code>pool</code>, and combines the
+	 * results into the same tree as <code>parse()</code>, assuming that sentences are delimited by line breaks.
+	 * Listeners are notified on the calling thread, after all lines were parsed.
+	 *
+	 * If a line cannot be parsed as a single sentence, the entire text is parsed sequentially, to report the
+	 * same error as <code>parse()</code>. So is text which consists of whitespace only, to return the same
+	 * program (e.g. one which was not parsed, for empty text).
+	 */
+	public ParsedNode parseParallel(String text, ForkJoinPool pool) throws ParseException {
+		if(text.trim().isEmpty())
+			return parse(text, null);
+		if(!compiled)
+			compile();
+		BNF grammar = targetGrammar.getBNF();
+		Production startProduction = grammar.getProductionArray(BNF.ARTIFICIAL_START_SYMBOL)[0];
+		NonTerminal programSymbol = (NonTerminal) startProduction.getRight()[0];
+		BNF sentenceGrammar = new BNF(grammar);
+		sentenceGrammar.removeStartProduction();
+		sentenceGrammar.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, targetGrammar.getSymbol("sentence"), BNF.ARTIFICIAL_STOP_SYMBOL));
+		sentenceGrammar.compileFirstSets();
+
+		ArrayList<Integer> lineStarts = new ArrayList<>();
+		int lineStart = 0;
+		while(lineStart < text.length()) {
+			int lineEnd = text.indexOf('\n', lineStart);
+			if(lineEnd < 0)
+				lineEnd = text.length();
+			if(lineEnd > lineStart)
+				lineStarts.add(lineStart);
+			lineStart = lineEnd + 1;
+		}
+
+		ParsedNode[] sentences;
+		try {
+			sentences = pool.submit(() -> lineStarts.parallelStream().map(start -> {
+				int end = text.indexOf('\n', start);
+				if(end < 0)
+					end = text.length();
+				RDParser rdParser = new RDParser(sentenceGrammar, new Lexer(CharBuffer.wrap(text, start, end)), EBNFParsedNodeFactory.INSTANCE);
+				rdParser.setEngine(engine);
+				rdParser.setLightweightAutocompletion(lightweightAutocompletion);
+				rdParser.setMemoization(memoization);
+				rdParser.setParseBudget(parseBudget);
+				try {
+					DefaultParsedNode sentence = rdParser.parse().getChild(0);
+					sentence.moveTo(text, start);
+					return (ParsedNode) sentence;
+				} catch(ParseException e) {
+					return null;
+				}
+			}).toArray(ParsedNode[]::new)).get();
+		} catch(InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		for(ParsedNode sentence : sentences)
+			if(sentence == null || sentence.getMatcher().state != ParsingState.SUCCESSFUL)
+				return parse(text, null);
+
+		ParsedNode program = new ParsedNode(
+				new Matcher(ParsingState.SUCCESSFUL, text, 0, text.length()),
+				programSymbol,
+				grammar.getProductionArray(programSymbol)[0]);
+		ParsedNode stop = new ParsedNode(
+				new Matcher(ParsingState.SUCCESSFUL, text, text.length(), text.length() + 1),
+				BNF.ARTIFICIAL_STOP_SYMBOL,
+				null);
+		ParsedNode root = new ParsedNode(
+				new Matcher(ParsingState.SUCCESSFUL, text, 0, text.length() + 1),
+				BNF.ARTIFICIAL_START_SYMBOL,
+				startProduction);
+		startProduction.wasExtended(root, program, stop);
+		program.addChildren(sentences);
+		root.addChildren(program, stop);
+
+		fireParsingStarted();
+		root.notifyListeners();
+		return root;
+	}
+
+	public ParsedNode reparse(ParsedNode previousResult, int editOffset, int removedLen, String insertedText) throws ParseException {
+		return reparse(previousResult, editOffset, removedLen, insertedText, null);
+	}
+
+	/**
+	 * Parses the text of <code>previousResult</code> after replacing <code>removedLen</code> characters at
+	 * <code>editOffset</code> with <code>insertedText</code>, assuming that sentences are delimited by line breaks.
+	 *
+	 * Only the lines touched by the edit are parsed again. The sentences before them are taken over from
+	 * <code>previousResult</code>, and so are the sentences after them, if <code>previousResult</code> was
+	 * parsed successfully and no autocompletions are requested (these are only collected at the end of the text).
+	 * The sentences which are taken over are neither copied nor parsed again; the ones after the edit are moved
+	 * lazily (see <code>DefaultParsedNode.moveTo()</code>). Only the sentences which are parsed again, the program
+	 * and the root notify their <code>ParseListener</code>s, and parse start listeners are not notified, so that
+	 * what listeners collected for the other sentences remains valid; their current positions are those of their
+	 * matchers. <code>previousResult</code> is updated in place and must not be used afterwards, except through
+	 * the returned tree.
+	 *
+	 * If the edited lines don't parse successfully, the entire text is parsed, to report the same error as
+	 * <code>parse()</code>.
+	 */
+	public ParsedNode reparse(ParsedNode previousResult, int editOffset, int removedLen, String insertedText, ArrayList<Autocompletion> autocompletions) throws ParseException {
+		return reparse(previousResult, editOffset, removedLen, insertedText, autocompletions, null);
+	}
+
+	/**
+	 * Like <code>reparse(previousResult, editOffset, removedLen, insertedText, autocompletions)</code>, but
+	 * throws a <code>java.util.concurrent.CancellationException</code> as soon as <code>cancellationToken</code>
+	 * is cancelled. <code>previousResult</code> is left unchanged in that case.
+	 */
+	public ParsedNode reparse(ParsedNode previousResult, int editOffset, int removedLen, String insertedText, ArrayList<Autocompletion> autocompletions, CancellationToken cancellationToken) throws ParseException {
+		DefaultParsedNode program = previousResult.getChild(0);
+		Matcher programMatcher = program.getMatcher();
+		int oldLength = programMatcher.end;
+		CharSequence oldText = programMatcher.getInput();
+		if(oldText == null || oldText.length() != oldLength)
+			oldText = programMatcher.getParsed();
+		if(editOffset < 0 || removedLen < 0 || editOffset + removedLen > oldLength)
+			throw new IndexOutOfBoundsException("Edit [" + editOffset + ", " + (editOffset + removedLen) + ") outside of the parsed text of length " + oldLength);
+		if(!compiled)
+			return parse(SplicedText.splice(oldText, editOffset, editOffset + removedLen, insertedText).toString(), autocompletions, cancellationToken);
+
+		int start = editOffset;
+		while(start > 0 && oldText.charAt(start - 1) != '\n')
+			start--;
+		int end = editOffset + removedLen;
+		while(end < oldLength && oldText.charAt(end) != '\n')
+			end++;
+		int lineStart = start;
+		int lineEnd = end;
+		boolean keepFollowing = autocompletions == null && programMatcher.state == ParsingState.SUCCESSFUL;
+
+		// the sentences before and after the edited lines, and the part of the text in between
+		int nSentences = program.numChildren();
+		int firstEdited = firstSentence(program, 0, nSentences, m -> m.end > lineStart);
+		// only the last sentence can be unsuccessful
+		if(firstEdited > 0 && program.getChild(firstEdited - 1).getMatcher().state != ParsingState.SUCCESSFUL)
+			firstEdited--;
+		int firstFollowing = keepFollowing
+				? firstSentence(program, firstEdited, nSentences, m -> m.pos >= lineEnd)
+				: nSentences;
+		int regionStart = firstEdited > 0 ? program.getChild(firstEdited - 1).getMatcher().end : 0;
+		int regionEnd = firstFollowing < nSentences ? program.getChild(firstFollowing).getMatcher().pos : oldLength;
+		String regionText = new StringBuilder(regionEnd - regionStart + insertedText.length())
+				.append(oldText, regionStart, editOffset)
+				.append(insertedText)
+				.append(oldText, editOffset + removedLen, regionEnd)
+				.toString();
+		CharSequence text = SplicedText.splice(oldText, regionStart, regionEnd, regionText);
+		int delta = insertedText.length() - removedLen;
+
+		symbol2Autocompletion.clear();
+		// not an EBNFParser, listeners are notified once the tree for the entire text is assembled
+		RDParser rdParser = new RDParser(targetGrammar.getBNF(), new Lexer(regionText), EBNFParsedNodeFactory.INSTANCE);
+		rdParser.setEngine(engine);
+		rdParser.setLightweightAutocompletion(lightweightAutocompletion);
+		rdParser.setMemoization(memoization);
+		rdParser.setParseBudget(parseBudget);
+		rdParser.setCancellationToken(cancellationToken);
+		rdParser.setParseStats(parseStats);
+		ArrayList<Autocompletion> regionAutocompletions = autocompletions == null ? null : new ArrayList<>();
+		DefaultParsedNode regionRoot;
+		try {
+			regionRoot = rdParser.parse(regionAutocompletions);
+		} catch(ParseException e) {
+			return parse(text.toString(), autocompletions, cancellationToken);
+		}
+		if(firstFollowing < nSentences && regionRoot.getMatcher().state != ParsingState.SUCCESSFUL)
+			return parse(text.toString(), autocompletions, cancellationToken);
+
+		// the parsed sentences are numbered and named as in a parse of the entire text
+		DefaultParsedNode regionProgram = regionRoot.getChild(0);
+		DefaultParsedNode[] regionSentences = regionProgram.getChildren();
+		for(int i = 0; i < regionSentences.length; i++) {
+			regionSentences[i].moveTo(text, regionStart);
+			regionSentences[i].setName(PROGRAM.getParsedNameForChild(firstEdited + i));
+		}
+		if(delta != 0) {
+			for(int i = firstFollowing; i < nSentences; i++)
+				program.getChild(i).moveTo(text, delta);
+		}
+		program.replaceChildren(firstEdited, firstFollowing, regionSentences);
+
+		// the program and the root extend over the preceding and following sentences
+		int programEnd = regionProgram.getMatcher().end + text.length() - regionText.length();
+		program.setMatcher(new Matcher(regionProgram.getMatcher().state, text, 0, programEnd));
+		int rootEnd = programEnd + regionRoot.getMatcher().end - regionProgram.getMatcher().end;
+		previousResult.setMatcher(new Matcher(regionRoot.getMatcher().state, text, 0, rootEnd));
+		DefaultParsedNode stop = regionRoot.getChild(1);
+		stop.moveTo(text, text.length() - regionText.length());
+		previousResult.replaceChildren(1, 2, stop);
+
+		for(DefaultParsedNode sentence : regionSentences)
+			((ParsedNode) sentence).notifyListeners();
+		((ParsedNode) program).notifyListener();
+		previousResult.notifyListener();
+		if(autocompletions != null)
+			autocompletions.addAll(regionAutocompletions);
+		return previousResult;
+	}
+
+	/**
+	 * @return the index of the first of the sentences of <code>program</code> between <code>from</code> and
+	 * <code>to</code> whose matcher satisfies <code>condition</code>, or <code>to</code>. The sentences are
+	 * ordered by position, so that <code>condition</code> only holds from some index on.
+	 */
+	private static int firstSentence(DefaultParsedNode program, int from, int to, Predicate<Matcher> condition) {
+		int lo = from;
+		int hi = to;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(condition.test(program.getChild(mid).getMatcher()))
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+
 	public Generation generate(Rule rule) {
 		return rule.generate(targetGrammar);
 	}
@@ -214,259 +634,6 @@ public class Parser {
 		return currentLevel;
 	}
 
-	private Rule quantifier() {
-		return grammar.or("quantifier",
-				grammar.sequence(null, Terminal.literal("?").withName()).       setEvaluator(pn -> Range.OPTIONAL).withName("optional"),
-				grammar.sequence(null, Terminal.literal("+").withName()).       setEvaluator(pn -> Range.PLUS).withName("plus"),
-				grammar.sequence(null, Terminal.literal("*").withName()).       setEvaluator(pn -> Range.STAR).withName("star"),
-				grammar.sequence(null, grammar.INTEGER_RANGE.withName("range")).setEvaluator(pn -> pn.evaluate(0)).withName("range"),
-				grammar.sequence(null,       grammar.INTEGER.withName("int")).  setEvaluator(pn -> new Range((int)pn.evaluate(0))).withName("fixed")
-		);
-	}
-
-	/**
-	 * [A-Za-z_] ([A-Za-z0-9-_]* [A-Za-z0-9_])?
-	 *
-	 * Start:  letter or underscore
-	 * Middle: letter or underscore or dash or digit
-	 * End:    letter or underscore or digit
-	 *
-	 */
-	private Rule identifier(String name) {
-		if(name == null)
-			name = "identifier";
-		return grammar.sequence(name,
-				Terminal.characterClass("[A-Za-z_]").withName(),
-				grammar.optional(null,
-						grammar.sequence(null,
-								grammar.star(null,
-										Terminal.characterClass("[A-Za-z0-9_-]").withName()
-								).withName("star"),
-								Terminal.characterClass("[A-Za-z0-9_]").withName()
-						).withName("seq")
-				).withName("opt")
-		);
-	}
-
-	/**
-	 * (was: ExtendedName)
-	 *
-	 * [^:{}\n]+
-	 *
-	 * Everything but ':', '{', '}'
-	 */
-	private Rule variableName() {
-		return grammar.plus("var-name",
-				Terminal.characterClass("[^:{}]").withName()).setEvaluator(Evaluator.DEFAULT_EVALUATOR);
-	}
-
-	/**
-	 * (was: Name)
-	 */
-	private Rule entryName() {
-		return identifier("entry-name");
-	}
-
-	// evaluates to the target grammar's list rule (i.e. Join).
-	private Rule list() {
-		return grammar.sequence("list",
-				Terminal.literal("list").withName(),
-				grammar.WHITESPACE_STAR.withName("ws*"),
-				Terminal.literal("<").withName(),
-				grammar.WHITESPACE_STAR.withName("ws*"),
-				IDENTIFIER.withName("type"),
-				grammar.WHITESPACE_STAR.withName("ws*"),
-				Terminal.literal(">").withName()
-		).setEvaluator(pn -> {
-			String identifier = (String) pn.evaluate("type");
-			Symbol entry = targetGrammar.getSymbol(identifier);
-
-			Named<?> namedEntry = (entry instanceof Terminal)
-					? ((Terminal) entry).withName(identifier)
-					: ((NonTerminal) entry).withName(identifier);
-			return targetGrammar.list(null, namedEntry);
-		});
-	}
-
-	private Rule tuple() {
-		return grammar.sequence("tuple",
-				Terminal.literal("tuple").withName(),
-				grammar.WHITESPACE_STAR.withName("ws*"),
-				Terminal.literal("<").withName(),
-				grammar.WHITESPACE_STAR.withName("ws*"),
-				IDENTIFIER.withName("type"),
-				grammar.plus(null,
-						grammar.sequence(null,
-								grammar.WHITESPACE_STAR.withName("ws*"),
-								Terminal.literal(",").withName(),
-								grammar.WHITESPACE_STAR.withName("ws*"),
-								ENTRY_NAME.withName("entry-name"),
-								grammar.WHITESPACE_STAR.withName("ws*")
-						).withName("sequence-names")
-				).withName("plus-names"),
-				Terminal.literal(">").withName()
-		).setEvaluator(pn -> {
-			String type = (String)pn.evaluate("type");
-			DefaultParsedNode plus = pn.getChild("plus-names");
-			int nTuple = plus.numChildren();
-			String[] entryNames = new String[nTuple];
-			for(int i = 0; i < nTuple; i++)
-				entryNames[i] = (String) plus.getChild(i).evaluate("entry-name");
-
-			Symbol entry = targetGrammar.getSymbol(type);
-			Named<?> namedEntry = (entry instanceof Terminal)
-					? ((Terminal) entry).withName()
-					: ((NonTerminal) entry).withName();
-
-			return targetGrammar.tuple(null, namedEntry, entryNames).getTarget();
-		});
-	}
-
-	private Rule characterClass() {
-		return grammar.sequence("character-class",
-				Terminal.literal("[").withName(),
-				grammar.plus(null,
-						grammar.or(null,
-							Terminal.characterClass("[^]]").withName(),
-							Terminal.literal("\\]").withName()
-						).withName()
-				).withName("plus"),
-				Terminal.literal("]").withName()
-		).setEvaluator(pn -> {
-			String pattern = pn.getParsedString();
-			return Terminal.characterClass(pattern);
-		});
-	}
-
-	private Rule type() {
-		return grammar.or("type",
-				grammar.sequence(null,
-						IDENTIFIER.withName("identifier")
-				).setEvaluator(pn -> {
-					String str = pn.getParsedString();
-					Symbol symbol = targetGrammar.getSymbol(str);
-					if(symbol == null)
-						throw new RuntimeException("Unknown type '" + str + "'");
-					return symbol;
-				}).withName("type"),
-				LIST.withName("list"),
-				TUPLE.withName("tuple"),
-				CHARACTER_CLASS.withName("character-class")
-		);
-	}
-
-	/*
-	 * {name:[:type][:quantifier]}
-	 * - either just the name: {From frame}
-	 * - or name and type: {frame:int}
-	 */
-	private Rule variable() {
-		return grammar.sequence("variable",
-				Terminal.literal("{").withName(),
-				VARIABLE_NAME.withName("variable-name"),
-				grammar.optional(null,
-						grammar.sequence(null,
-								Terminal.literal(":").withName(),
-								TYPE.withName("type")
-						).withName("seq-type")
-				).withName("opt-type"),
-				grammar.optional(null,
-						grammar.sequence(null,
-								Terminal.literal(":").withName(),
-								QUANTIFIER.withName("quantifier")
-						).withName("seq-quantifier")
-				).withName("opt-quantifier"),
-				Terminal.literal("}").withName()
-		).setEvaluator(pn -> {
-			String variableName = (String) pn.evaluate("variable-name");
-			Object typeObject = pn.evaluate("opt-type", "seq-type", "type");
-			Object quantifierObject = pn.evaluate("opt-quantifier", "seq-quantifier", "quantifier");
-
-
-			// typeObject is either
-			// - a type (symbol) from the target grammar, or
-			// - a character-class (i.e. a terminal), or
-			// - a tuple (i.e. symbol of the tuple in the target grammar), or
-			// - a list (i.e. a Rule, or more specifically a Join).
-			if(typeObject instanceof Join) {
-				Join join = (Join) typeObject;
-				if(quantifierObject != null)
-					join.setCardinality((Range) quantifierObject);
-				return join.withName(variableName);
-			}
-
-			Symbol symbol = typeObject == null
-					? Terminal.literal(variableName)
-					: (Symbol) typeObject;
-
-			Named<?> namedSymbol = (symbol instanceof Terminal)
-					? ((Terminal) symbol).withName(variableName)
-					: ((NonTerminal) symbol).withName(variableName);
-
-			if(quantifierObject != null) {
-				Autocompleter autocompleter = null;
-				// set a new fallback autocompleter. This is important for e.g. {bla:[a-z]:4} or {bla:digit:4}
-				if(typeObject instanceof Terminal)
-					autocompleter = Autocompleter.DEFAULT_INLINE_AUTOCOMPLETER;
-				Range range = (Range) quantifierObject;
-				     if(range.equals(Range.STAR))     symbol = targetGrammar.star(    null, namedSymbol).setAutocompleter(autocompleter).getTarget();
-				else if(range.equals(Range.PLUS))     symbol = targetGrammar.plus(    null, namedSymbol).setAutocompleter(autocompleter).getTarget();
-				else if(range.equals(Range.OPTIONAL)) symbol = targetGrammar.optional(null, namedSymbol).setAutocompleter(autocompleter).getTarget();
-				else                                  symbol = targetGrammar.repeat(  null, namedSymbol, range.getLower(), range.getUpper()).setAutocompleter(autocompleter).getTarget();
-				namedSymbol = ((NonTerminal) symbol).withName(variableName);
-			}
-			return namedSymbol;
-		});
-	}
-
-	private Rule noVariable() {
-		return grammar.sequence("no-variable",
-				Terminal.characterClass("[^ \t\n{]").withName(),
-				grammar.optional("no-var-tail-opt",
-						grammar.sequence("no-var-tail-opt-seq",
-								grammar.star("no-var-tail-opt-seq-star",
-										Terminal.characterClass("[^{\n]").withName()
-								).withName("middle"),
-								Terminal.characterClass("[^ \t\n{]").withName()
-						).withName("seq")
-				).withName("tail")
-		).setEvaluator(pn -> Terminal.literal(pn.getParsedString()).withName());
-	}
-
-	private Rule expression() {
-		return grammar.join("expression",
-				grammar.or("var-or-novar",
-						NO_VARIABLE.withName("no-variable"),
-						VARIABLE.withName("variable")
-				).withName("or"),
-				null,
-				null,
-				grammar.WHITESPACE_STAR.withName("delimiter"),
-				false,
-				Range.PLUS
-		).setEvaluator(parsedNode -> {
-			int nChildren = parsedNode.numChildren();
-
-			ArrayList<Named<?>> rhsList = new ArrayList<>();
-
-			rhsList.add((Named<?>) parsedNode.evaluate(0));
-			for(int i = 1; i < nChildren; i++) {
-				DefaultParsedNode child = parsedNode.getChild(i);
-				if(i % 2 == 0) { // or
-					rhsList.add((Named<?>) child.evaluate());
-				}
-				else { // ws*
-					boolean hasWS = child.numChildren() > 0;
-					if(hasWS)
-						rhsList.add(targetGrammar.WHITESPACE_PLUS.withName("ws+"));
-				}
-			}
-			Named<?>[] rhs = new Named[rhsList.size()];
-			rhsList.toArray(rhs);
-			return rhs;
-		});
-	}
-
 	private Rule program() {
 		return targetGrammar.join("program",
 				new NonTerminal("sentence").withName("sentence"),
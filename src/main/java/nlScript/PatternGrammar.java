@@ -0,0 +1,380 @@
+package nlScript;
+
+import nlScript.core.*;
+import nlScript.ebnf.EBNF;
+import nlScript.ebnf.EBNFParsedNodeFactory;
+import nlScript.ebnf.Join;
+import nlScript.ebnf.Rule;
+import nlScript.util.Range;
+
+import java.util.ArrayList;
+
+/**
+ * The grammar for patterns, i.e. the language of <code>Parser.defineSentence()</code> and
+ * <code>Parser.defineType()</code>. It does not depend on the sentences and types a <code>Parser</code>
+ * defines, so it is built and compiled once and shared by all parsers (see <code>shared()</code>). Its
+ * evaluators add the types a pattern refers to (lists, tuples, quantified variables) to the target grammar
+ * of a parser, which <code>parse()</code> passes to them with the <code>ParseContext</code> of the parsed
+ * nodes, and record them for <code>GrammarSnapshot</code>.
+ */
+final class PatternGrammar {
+
+	private static final class Holder {
+		private static final PatternGrammar SHARED = new PatternGrammar(null);
+	}
+
+	/**
+	 * The pattern grammar shared by all parsers. It is compiled with <code>EXPRESSION</code> as top-level
+	 * symbol and must not be modified.
+	 */
+	static PatternGrammar shared() {
+		return Holder.SHARED;
+	}
+
+	final EBNF grammar = new EBNF();
+
+	final Rule QUANTIFIER;
+	final Rule IDENTIFIER;
+	final Rule VARIABLE_NAME;
+	final Rule ENTRY_NAME;
+	final Rule LIST;
+	final Rule TUPLE;
+	final Rule CHARACTER_CLASS;
+	final Rule TYPE;
+	final Rule VARIABLE;
+	final Rule NO_VARIABLE;
+	final Rule EXPRESSION;
+
+	// the parser of a non-shared pattern grammar, null for the shared one.
+	private final Parser boundParser;
+
+	/**
+	 * Creates a pattern grammar. If <code>parser</code> is not null, the grammar is bound to it, i.e. its
+	 * rules can be evaluated directly, without going through <code>parse()</code>.
+	 */
+	PatternGrammar(Parser parser) {
+		this.boundParser = parser;
+
+		QUANTIFIER      = quantifier();
+		IDENTIFIER      = identifier("identifier");
+		VARIABLE_NAME   = variableName();
+		ENTRY_NAME      = entryName();
+		LIST            = list();
+		TUPLE           = tuple();
+		CHARACTER_CLASS = characterClass();
+		TYPE            = type();
+		VARIABLE        = variable();
+		NO_VARIABLE     = noVariable();
+		EXPRESSION      = expression();
+
+		grammar.compile(EXPRESSION.getTarget());
+		grammar.getBNF().compileFirstSets();
+	}
+
+	/**
+	 * Parses <code>pattern</code> and evaluates it to the right-hand side of a new production of the target
+	 * grammar of <code>parser</code>.
+	 */
+	Named<?>[] parse(String pattern, Parser parser) {
+		RDParser rdParser = new RDParser(
+				grammar.getBNF(),
+				new Lexer(pattern),
+				new EBNFParsedNodeFactory(ParseContext.forPattern(parser)));
+		DefaultParsedNode pn;
+		try {
+			pn = rdParser.parse();
+		} catch (ParseException e) {
+			throw new RuntimeException("Parsing failed", e);
+		}
+		if(pn.getMatcher().state != ParsingState.SUCCESSFUL)
+			throw new RuntimeException("Parsing failed");
+		return (Named<?>[]) pn.evaluate();
+	}
+
+	// the parser whose pattern pn was parsed from
+	private Parser parser(ParsedNode pn) {
+		if(boundParser != null)
+			return boundParser;
+		ParseContext context = pn.getContext();
+		if(context == null || context.parser == null)
+			throw new IllegalStateException("Pattern grammar is not bound to a parser");
+		return context.parser;
+	}
+
+	private EBNF targetGrammar(ParsedNode pn) {
+		return parser(pn).getTargetGrammar();
+	}
+
+	// null if the parser doesn't record its definitions
+	private GrammarSnapshot.Recorder recorder(ParsedNode pn) {
+		return parser(pn).getRecorder();
+	}
+
+	private Rule quantifier() {
+		return grammar.or("quantifier",
+				grammar.sequence(null, Terminal.literal("?").withName()).       setEvaluator(pn -> Range.OPTIONAL).withName("optional"),
+				grammar.sequence(null, Terminal.literal("+").withName()).       setEvaluator(pn -> Range.PLUS).withName("plus"),
+				grammar.sequence(null, Terminal.literal("*").withName()).       setEvaluator(pn -> Range.STAR).withName("star"),
+				grammar.sequence(null, grammar.getIntegerRange().withName("range")).setEvaluator(pn -> pn.evaluate(0)).withName("range"),
+				grammar.sequence(null,      grammar.getInteger().withName("int")).  setEvaluator(pn -> new Range((int)pn.evaluate(0))).withName("fixed")
+		);
+	}
+
+	/**
+	 * [A-Za-z_] ([A-Za-z0-9-_]* [A-Za-z0-9_])?
+	 *
+	 * Start:  letter or underscore
+	 * Middle: letter or underscore or dash or digit
+	 * End:    letter or underscore or digit
+	 *
+	 */
+	private Rule identifier(String name) {
+		if(name == null)
+			name = "identifier";
+		return grammar.sequence(name,
+				Terminal.characterClass("[A-Za-z_]").withName(),
+				grammar.optional(null,
+						grammar.sequence(null,
+								grammar.star(null,
+										Terminal.characterClass("[A-Za-z0-9_-]").withName()
+								).withName("star"),
+								Terminal.characterClass("[A-Za-z0-9_]").withName()
+						).withName("seq")
+				).withName("opt")
+		);
+	}
+
+	/**
+	 * (was: ExtendedName)
+	 *
+	 * [^:{}\n]+
+	 *
+	 * Everything but ':', '{', '}'
+	 */
+	private Rule variableName() {
+		return grammar.plus("var-name",
+				Terminal.characterClass("[^:{}]").withName()).setEvaluator(Evaluator.DEFAULT_EVALUATOR);
+	}
+
+	/**
+	 * (was: Name)
+	 */
+	private Rule entryName() {
+		return identifier("entry-name");
+	}
+
+	// evaluates to the target grammar's list rule (i.e. Join).
+	private Rule list() {
+		return grammar.sequence("list",
+				Terminal.literal("list").withName(),
+				grammar.getWhitespaceStar().withName("ws*"),
+				Terminal.literal("<").withName(),
+				grammar.getWhitespaceStar().withName("ws*"),
+				IDENTIFIER.withName("type"),
+				grammar.getWhitespaceStar().withName("ws*"),
+				Terminal.literal(">").withName()
+		).setEvaluator(pn -> {
+			String identifier = (String) pn.evaluate("type");
+			Symbol entry = targetGrammar(pn).getSymbol(identifier);
+
+			Named<?> namedEntry = (entry instanceof Terminal)
+					? ((Terminal) entry).withName(identifier)
+					: ((NonTerminal) entry).withName(identifier);
+			Rule list = targetGrammar(pn).list(null, namedEntry);
+			GrammarSnapshot.Recorder recorder = recorder(pn);
+			if(recorder != null)
+				recorder.list(list.getTarget(), namedEntry);
+			return list;
+		});
+	}
+
+	private Rule tuple() {
+		return grammar.sequence("tuple",
+				Terminal.literal("tuple").withName(),
+				grammar.getWhitespaceStar().withName("ws*"),
+				Terminal.literal("<").withName(),
+				grammar.getWhitespaceStar().withName("ws*"),
+				IDENTIFIER.withName("type"),
+				grammar.plus(null,
+						grammar.sequence(null,
+								grammar.getWhitespaceStar().withName("ws*"),
+								Terminal.literal(",").withName(),
+								grammar.getWhitespaceStar().withName("ws*"),
+								ENTRY_NAME.withName("entry-name"),
+								grammar.getWhitespaceStar().withName("ws*")
+						).withName("sequence-names")
+				).withName("plus-names"),
+				Terminal.literal(">").withName()
+		).setEvaluator(pn -> {
+			String type = (String)pn.evaluate("type");
+			DefaultParsedNode plus = pn.getChild("plus-names");
+			int nTuple = plus.numChildren();
+			String[] entryNames = new String[nTuple];
+			for(int i = 0; i < nTuple; i++)
+				entryNames[i] = (String) plus.getChild(i).evaluate("entry-name");
+
+			Symbol entry = targetGrammar(pn).getSymbol(type);
+			Named<?> namedEntry = (entry instanceof Terminal)
+					? ((Terminal) entry).withName()
+					: ((NonTerminal) entry).withName();
+
+			NonTerminal tuple = targetGrammar(pn).tuple(null, namedEntry, entryNames).getTarget();
+			GrammarSnapshot.Recorder recorder = recorder(pn);
+			if(recorder != null)
+				recorder.tuple(tuple, namedEntry, entryNames);
+			return tuple;
+		});
+	}
+
+	private Rule characterClass() {
+		return grammar.sequence("character-class",
+				Terminal.literal("[").withName(),
+				grammar.plus(null,
+						grammar.or(null,
+							Terminal.characterClass("[^]]").withName(),
+							Terminal.literal("\\]").withName()
+						).withName()
+				).withName("plus"),
+				Terminal.literal("]").withName()
+		).setEvaluator(pn -> {
+			String pattern = pn.getParsedString();
+			return Terminal.characterClass(pattern);
+		});
+	}
+
+	private Rule type() {
+		return grammar.or("type",
+				grammar.sequence(null,
+						IDENTIFIER.withName("identifier")
+				).setEvaluator(pn -> {
+					String str = pn.getParsedString();
+					Symbol symbol = targetGrammar(pn).getSymbol(str);
+					if(symbol == null)
+						throw new RuntimeException("Unknown type '" + str + "'");
+					return symbol;
+				}).withName("type"),
+				LIST.withName("list"),
+				TUPLE.withName("tuple"),
+				CHARACTER_CLASS.withName("character-class")
+		);
+	}
+
+	/*
+	 * {name:[:type][:quantifier]}
+	 * - either just the name: {From frame}
+	 * - or name and type: {frame:int}
+	 */
+	private Rule variable() {
+		return grammar.sequence("variable",
+				Terminal.literal("{").withName(),
+				VARIABLE_NAME.withName("variable-name"),
+				grammar.optional(null,
+						grammar.sequence(null,
+								Terminal.literal(":").withName(),
+								TYPE.withName("type")
+						).withName("seq-type")
+				).withName("opt-type"),
+				grammar.optional(null,
+						grammar.sequence(null,
+								Terminal.literal(":").withName(),
+								QUANTIFIER.withName("quantifier")
+						).withName("seq-quantifier")
+				).withName("opt-quantifier"),
+				Terminal.literal("}").withName()
+		).setEvaluator(pn -> {
+			String variableName = (String) pn.evaluate("variable-name");
+			Object typeObject = pn.evaluate("opt-type", "seq-type", "type");
+			Object quantifierObject = pn.evaluate("opt-quantifier", "seq-quantifier", "quantifier");
+
+
+			// typeObject is either
+			// - a type (symbol) from the target grammar, or
+			// - a character-class (i.e. a terminal), or
+			// - a tuple (i.e. symbol of the tuple in the target grammar), or
+			// - a list (i.e. a Rule, or more specifically a Join).
+			if(typeObject instanceof Join) {
+				Join join = (Join) typeObject;
+				if(quantifierObject != null) {
+					join.setCardinality((Range) quantifierObject);
+					GrammarSnapshot.Recorder recorder = recorder(pn);
+					if(recorder != null)
+						recorder.cardinality(join.getTarget(), (Range) quantifierObject);
+				}
+				return join.withName(variableName);
+			}
+
+			Symbol symbol = typeObject == null
+					? Terminal.literal(variableName)
+					: (Symbol) typeObject;
+
+			Named<?> namedSymbol = (symbol instanceof Terminal)
+					? ((Terminal) symbol).withName(variableName)
+					: ((NonTerminal) symbol).withName(variableName);
+
+			if(quantifierObject != null) {
+				Autocompleter autocompleter = null;
+				// set a new fallback autocompleter. This is important for e.g. {bla:[a-z]:4} or {bla:digit:4}
+				if(typeObject instanceof Terminal)
+					autocompleter = Autocompleter.DEFAULT_INLINE_AUTOCOMPLETER;
+				Range range = (Range) quantifierObject;
+				     if(range.equals(Range.STAR))     symbol = targetGrammar(pn).star(    null, namedSymbol).setAutocompleter(autocompleter).getTarget();
+				else if(range.equals(Range.PLUS))     symbol = targetGrammar(pn).plus(    null, namedSymbol).setAutocompleter(autocompleter).getTarget();
+				else if(range.equals(Range.OPTIONAL)) symbol = targetGrammar(pn).optional(null, namedSymbol).setAutocompleter(autocompleter).getTarget();
+				else                                  symbol = targetGrammar(pn).repeat(  null, namedSymbol, range.getLower(), range.getUpper()).setAutocompleter(autocompleter).getTarget();
+				GrammarSnapshot.Recorder recorder = recorder(pn);
+				if(recorder != null)
+					recorder.quantifier((NonTerminal) symbol, namedSymbol, range, autocompleter != null);
+				namedSymbol = ((NonTerminal) symbol).withName(variableName);
+			}
+			return namedSymbol;
+		});
+	}
+
+	private Rule noVariable() {
+		return grammar.sequence("no-variable",
+				Terminal.characterClass("[^ \t\n{]").withName(),
+				grammar.optional("no-var-tail-opt",
+						grammar.sequence("no-var-tail-opt-seq",
+								grammar.star("no-var-tail-opt-seq-star",
+										Terminal.characterClass("[^{\n]").withName()
+								).withName("middle"),
+								Terminal.characterClass("[^ \t\n{]").withName()
+						).withName("seq")
+				).withName("tail")
+		).setEvaluator(pn -> Terminal.literal(pn.getParsedString()).withName());
+	}
+
+	private Rule expression() {
+		return grammar.join("expression",
+				grammar.or("var-or-novar",
+						NO_VARIABLE.withName("no-variable"),
+						VARIABLE.withName("variable")
+				).withName("or"),
+				null,
+				null,
+				grammar.getWhitespaceStar().withName("delimiter"),
+				false,
+				Range.PLUS
+		).setEvaluator(parsedNode -> {
+			int nChildren = parsedNode.numChildren();
+
+			ArrayList<Named<?>> rhsList = new ArrayList<>();
+
+			rhsList.add((Named<?>) parsedNode.evaluate(0));
+			for(int i = 1; i < nChildren; i++) {
+				DefaultParsedNode child = parsedNode.getChild(i);
+				if(i % 2 == 0) { // or
+					rhsList.add((Named<?>) child.evaluate());
+				}
+				else { // ws*
+					boolean hasWS = child.numChildren() > 0;
+					if(hasWS)
+						rhsList.add(targetGrammar(parsedNode).getWhitespacePlus().withName("ws+"));
+				}
+			}
+			Named<?>[] rhs = new Named[rhsList.size()];
+			rhsList.toArray(rhs);
+			return rhs;
+		});
+	}
+}
@@ -0,0 +1,136 @@
+package nlScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A text which is composed of pieces of other texts, used by <code>Parser.reparse()</code> to represent the
+ * edited text without copying the parts that did not change.
+ *
+ * Each edit adds at most two pieces. Once there are more than <code>MAX_PIECES</code>, the text is copied into
+ * a <code>String</code>, so that looking up a character stays fast and the previous texts can be released.
+ */
+final class SplicedText implements CharSequence {
+
+	static final int MAX_PIECES = 1024;
+
+	private final CharSequence[] sources;
+	private final int[] offsets;
+	// the start of each piece within this text, followed by the length of this text
+	private final int[] starts;
+
+	private SplicedText(CharSequence[] sources, int[] offsets, int[] starts) {
+		this.sources = sources;
+		this.offsets = offsets;
+		this.starts = starts;
+	}
+
+	/**
+	 * @return <code>text</code>, with the characters between <code>from</code> (inclusive) and <code>to</code>
+	 * (exclusive) replaced by <code>replacement</code>.
+	 */
+	static CharSequence splice(CharSequence text, int from, int to, CharSequence replacement) {
+		Builder builder = new Builder();
+		builder.add(text, 0, from);
+		builder.add(replacement, 0, replacement.length());
+		builder.add(text, to, text.length());
+		return builder.build();
+	}
+
+	@Override
+	public int length() {
+		return starts[sources.length];
+	}
+
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= length())
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+		int piece = pieceAt(index);
+		return sources[piece].charAt(offsets[piece] + index - starts[piece]);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > length() || start > end)
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+		StringBuilder sb = new StringBuilder(end - start);
+		int piece = pieceAt(start);
+		int pos = start;
+		while(pos < end) {
+			int pieceEnd = Math.min(end, starts[piece + 1]);
+			int offset = offsets[piece] - starts[piece];
+			sb.append(sources[piece], pos + offset, pieceEnd + offset);
+			pos = pieceEnd;
+			piece++;
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+
+	// the index of the last piece which starts at or before index
+	private int pieceAt(int index) {
+		// pieces are never empty, so their starts are distinct
+		int i = Arrays.binarySearch(starts, 0, sources.length, index);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	private static final class Builder {
+		private final ArrayList<CharSequence> sources = new ArrayList<>();
+		private final ArrayList<Integer> offsets = new ArrayList<>();
+		private final ArrayList<Integer> lengths = new ArrayList<>();
+
+		/**
+		 * Adds the characters of <code>text</code> between <code>from</code> and <code>to</code>, taking over
+		 * the pieces of <code>text</code> if it is a <code>SplicedText</code> itself.
+		 */
+		void add(CharSequence text, int from, int to) {
+			if(!(text instanceof SplicedText)) {
+				addPiece(text, from, to - from);
+				return;
+			}
+			SplicedText spliced = (SplicedText) text;
+			if(from >= to)
+				return;
+			for(int piece = spliced.pieceAt(from); piece < spliced.sources.length && spliced.starts[piece] < to; piece++) {
+				int start = Math.max(from, spliced.starts[piece]);
+				int end = Math.min(to, spliced.starts[piece + 1]);
+				addPiece(spliced.sources[piece], spliced.offsets[piece] + start - spliced.starts[piece], end - start);
+			}
+		}
+
+		private void addPiece(CharSequence source, int offset, int length) {
+			if(length <= 0)
+				return;
+			int last = sources.size() - 1;
+			// continue the previous piece if this one follows it in the same source
+			if(last >= 0 && sources.get(last) == source && offsets.get(last) + lengths.get(last) == offset) {
+				lengths.set(last, lengths.get(last) + length);
+				return;
+			}
+			sources.add(source);
+			offsets.add(offset);
+			lengths.add(length);
+		}
+
+		CharSequence build() {
+			int n = sources.size();
+			if(n == 0)
+				return "";
+			if(n == 1 && offsets.get(0) == 0 && lengths.get(0) == sources.get(0).length())
+				return sources.get(0);
+			int[] starts = new int[n + 1];
+			for(int i = 0; i < n; i++)
+				starts[i + 1] = starts[i] + lengths.get(i);
+			int[] offsetArray = new int[n];
+			for(int i = 0; i < n; i++)
+				offsetArray[i] = offsets.get(i);
+			SplicedText ret = new SplicedText(sources.toArray(new CharSequence[0]), offsetArray, starts);
+			return n > MAX_PIECES ? ret.toString() : ret;
+		}
+	}
+}
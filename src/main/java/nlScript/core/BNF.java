@@ -1,8 +1,12 @@
 package nlScript.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,39 +24,137 @@ public class BNF {
 
 	private final ArrayList<Production> productions = new ArrayList<>();
 
+	// each production mapped to itself, to find existing equal productions
+	private final HashMap<Production, Production> productionSet = new HashMap<>();
+
+	private static final Production[] NO_PRODUCTIONS = new Production[0];
+
+	// productions by their left-hand side, in the order they were added, and in reverse order
+	private final HashMap<NonTerminal, Production[]> productionIndex = new HashMap<>();
+	private final HashMap<NonTerminal, Production[]> reversedProductionIndex = new HashMap<>();
+
+	// computed on demand, discarded whenever the productions change
+	private ProductionTable productionTable = null;
+	private FirstSets firstSets = null;
+
+	// the left-hand sides whose index is not updated yet, non-null during a bulk insert
+	private HashSet<NonTerminal> pendingLefts = null;
+
+	// the number of names returned by makeUniqueSymbol()
+	private int nUniqueSymbols = 0;
+
 	public BNF() {}
 
 	public BNF(BNF other) {
 		this();
 		symbols.putAll(other.symbols);
+		other.flushPendingLefts();
 		productions.addAll(other.productions);
+		productionSet.putAll(other.productionSet);
+		productionIndex.putAll(other.productionIndex);
+		reversedProductionIndex.putAll(other.reversedProductionIndex);
+		productionTable = other.productionTable;
+		firstSets = other.firstSets;
+		nUniqueSymbols = other.nUniqueSymbols;
+	}
+
+	/**
+	 * Creates a copy of <code>other</code> with each production <code>p</code> replaced by
+	 * <code>copy.apply(p)</code>, e.g. <code>Production::copy</code> to detach the copy from later changes
+	 * to the productions of <code>other</code>.
+	 */
+	public BNF(BNF other, UnaryOperator<Production> copy) {
+		this();
+		beginBulkInsert();
+		for(Production p : other.productions)
+			addProduction(copy.apply(p));
+		endBulkInsert();
+		nUniqueSymbols = other.nUniqueSymbols;
 	}
 
 	public void reset() {
 		symbols.clear();
 		productions.clear();
+		productionSet.clear();
+		productionIndex.clear();
+		reversedProductionIndex.clear();
+		productionTable = null;
+		firstSets = null;
+		if(pendingLefts != null)
+			pendingLefts.clear();
 	}
 
 	public void removeStartProduction() {
 		for(int i = productions.size() - 1; i >= 0; i--) {
 			if (productions.get(i).getLeft().equals(BNF.ARTIFICIAL_START_SYMBOL)) {
-				this.productions.remove(i);
+				productionSet.remove(this.productions.remove(i));
+				updateIndex(BNF.ARTIFICIAL_START_SYMBOL);
 				break;
 			}
 		}
 	}
 
 	public void removeProductions(Set<Production> productions) {
-		this.productions.removeIf(productions::contains);
+		if(!this.productions.removeIf(productions::contains))
+			return;
+		for(Production p : productions)
+			productionSet.remove(p);
+		HashSet<NonTerminal> affected = new HashSet<>();
+		for(Production p : productions)
+			affected.add(p.getLeft());
+		updateIndex(affected);
+	}
+
+	private void updateIndex(NonTerminal left) {
+		updateIndex(Collections.singleton(left));
+	}
+
+	private void updateIndex(Set<NonTerminal> lefts) {
+		productionTable = null;
+		firstSets = null;
+		HashMap<NonTerminal, ArrayList<Production>> lists = new HashMap<>();
+		for(Production p : productions)
+			if(lefts.contains(p.getLeft()))
+				lists.computeIfAbsent(p.getLeft(), k -> new ArrayList<>()).add(p);
+		for(NonTerminal left : lefts) {
+			ArrayList<Production> list = lists.get(left);
+			if(list == null) {
+				productionIndex.remove(left);
+				reversedProductionIndex.remove(left);
+				continue;
+			}
+			Production[] forward = list.toArray(NO_PRODUCTIONS);
+			productionIndex.put(left, forward);
+			reversedProductionIndex.put(left, reverse(forward));
+		}
+	}
+
+	private static Production[] reverse(Production[] forward) {
+		Production[] reversed = new Production[forward.length];
+		for(int i = 0; i < forward.length; i++)
+			reversed[forward.length - 1 - i] = forward[i];
+		return reversed;
 	}
 
 	public Production addProduction(Production p) {
-		int existing = productions.indexOf(p);
-		if(existing >= 0) {
-			logger.info("Production already exists: " + productions.get(existing));
-			return productions.get(existing);
+		Production existing = productionSet.get(p);
+		if(existing != null) {
+			logger.info("Production already exists: " + existing);
+			return existing;
 		}
 		productions.add(p);
+		productionSet.put(p, p);
+		if(pendingLefts != null) {
+			pendingLefts.add(p.getLeft());
+		} else {
+			Production[] existingForLeft = productionIndex.getOrDefault(p.getLeft(), NO_PRODUCTIONS);
+			Production[] forward = Arrays.copyOf(existingForLeft, existingForLeft.length + 1);
+			forward[existingForLeft.length] = p;
+			productionIndex.put(p.getLeft(), forward);
+			reversedProductionIndex.put(p.getLeft(), reverse(forward));
+		}
+		productionTable = null;
+		firstSets = null;
 		symbols.put(p.getLeft().getSymbol(), p.getLeft());
 		for(Symbol s : p.getRight()) {
 			if(!s.isEpsilon())
@@ -61,6 +163,37 @@ public class BNF {
 		return p;
 	}
 
+	/**
+	 * Defers updating the productions by their left-hand side until <code>endBulkInsert()</code>, so that adding
+	 * many productions with the same left-hand side takes linear instead of quadratic time.
+	 */
+	public void beginBulkInsert() {
+		if(pendingLefts == null)
+			pendingLefts = new HashSet<>();
+	}
+
+	public void endBulkInsert() {
+		flushPendingLefts();
+		pendingLefts = null;
+	}
+
+	private void flushPendingLefts() {
+		if(pendingLefts == null || pendingLefts.isEmpty())
+			return;
+		HashSet<NonTerminal> lefts = pendingLefts;
+		pendingLefts = new HashSet<>();
+		updateIndex(lefts);
+	}
+
+	/**
+	 * Returns a name for anonymous symbols in this grammar, which is different from all names returned before
+	 * by this grammar and the grammar it was copied from. Names are numbered consecutively, starting with '#',
+	 * which identifiers in patterns can't contain, so that the same definitions always get the same names.
+	 */
+	public String makeUniqueSymbol() {
+		return "#" + nUniqueSymbols++;
+	}
+
 	public Symbol getSymbol(String symbol) {
 		Symbol ret = symbols.get(symbol);
 		if(ret == null)
@@ -69,9 +202,52 @@ public class BNF {
 	}
 
 	public ArrayList<Production> getProductions(NonTerminal left) {
-		ArrayList<Production> ret = new ArrayList<>(productions);
-		ret.removeIf(p -> !p.getLeft().equals(left));
-		return ret;
+		return new ArrayList<>(Arrays.asList(getProductionArray(left)));
+	}
+
+	/**
+	 * Returns the productions with the given left-hand side, in the order they were added.
+	 * The returned array is shared and must not be modified.
+	 */
+	public Production[] getProductionArray(NonTerminal left) {
+		if(pendingLefts != null)
+			flushPendingLefts();
+		return productionIndex.getOrDefault(left, NO_PRODUCTIONS);
+	}
+
+	/**
+	 * Returns the productions with the given left-hand side, in reverse order.
+	 * The returned array is shared and must not be modified.
+	 */
+	public Production[] getReversedProductionArray(NonTerminal left) {
+		if(pendingLefts != null)
+			flushPendingLefts();
+		return reversedProductionIndex.getOrDefault(left, NO_PRODUCTIONS);
+	}
+
+	/**
+	 * Computes the FIRST sets of all productions, unless they are still up-to-date.
+	 */
+	public void compileFirstSets() {
+		getFirstSets();
+	}
+
+	/**
+	 * Returns the productions indexed by dense indices of their left-hand sides, unless they changed since the
+	 * last call.
+	 */
+	ProductionTable getProductionTable() {
+		flushPendingLefts();
+		if(productionTable == null)
+			productionTable = new ProductionTable(productions);
+		return productionTable;
+	}
+
+	FirstSets getFirstSets() {
+		ProductionTable table = getProductionTable();
+		if(firstSets == null)
+			firstSets = new FirstSets(table);
+		return firstSets;
 	}
 
 	@Override
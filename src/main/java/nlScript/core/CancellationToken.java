@@ -0,0 +1,18 @@
+package nlScript.core;
+
+/**
+ * Allows to abort a running parse from another thread. A parse whose token is cancelled throws a
+ * <code>java.util.concurrent.CancellationException</code> the next time it checks the token.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled = false;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
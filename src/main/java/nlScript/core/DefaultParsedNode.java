@@ -4,6 +4,7 @@ import nlScript.Autocompleter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class DefaultParsedNode {
 
@@ -12,9 +13,13 @@ public class DefaultParsedNode {
 
 	private final Symbol symbol;
 	private final Production production;
-	private final Matcher matcher;
+	private Matcher matcher;
 	private String name;
 
+	// a move by moveOffset into moveInput, which is not yet applied to the matcher and the children, see moveTo()
+	private CharSequence moveInput = null;
+	private int moveOffset = 0;
+
 	public DefaultParsedNode(Matcher matcher, Symbol symbol, Production production) {
 		this.matcher = matcher;
 		this.symbol = symbol;
@@ -38,9 +43,46 @@ public class DefaultParsedNode {
 	}
 
 	public Matcher getMatcher() {
+		applyMove();
 		return matcher;
 	}
 
+	/**
+	 * Replaces the matcher of this node, e.g. when the extent of a node changes because its children are
+	 * replaced with <code>replaceChildren()</code>.
+	 */
+	public void setMatcher(Matcher matcher) {
+		applyMove();
+		this.matcher = matcher;
+	}
+
+	/**
+	 * Moves this node and all its descendants by <code>offset</code> characters, and makes their matchers refer to
+	 * <code>input</code>, which must contain the parsed text at the new positions.
+	 *
+	 * The move is applied lazily, to the matcher of a node when it is requested and to the children of a node when
+	 * they are accessed, so moving a large tree takes constant time.
+	 */
+	public void moveTo(CharSequence input, int offset) {
+		moveOffset = moveInput != null ? moveOffset + offset : offset;
+		moveInput = input;
+	}
+
+	private void applyMove() {
+		if(moveInput == null)
+			return;
+		Matcher m = matcher;
+		if(m.state != ParsingState.NOT_PARSED) {
+			matcher = m.input != null
+					? new Matcher(m.state, moveInput, m.pos + moveOffset, m.end + moveOffset)
+					: new Matcher(m.state, m.pos + moveOffset, m.getParsed());
+		}
+		for(DefaultParsedNode child : children)
+			child.moveTo(moveInput, moveOffset);
+		moveInput = null;
+		moveOffset = 0;
+	}
+
 	public boolean doesAutocomplete() {
 		return getAutocompletion(true) != null;
 	}
@@ -54,14 +96,17 @@ public class DefaultParsedNode {
 	}
 
 	public final DefaultParsedNode[] getChildren() {
+		applyMove();
 		return children.toArray(new DefaultParsedNode[0]);
 	}
 
 	public DefaultParsedNode getChild(int i) {
+		applyMove();
 		return children.get(i);
 	}
 
 	public DefaultParsedNode getChild(String name) {
+		applyMove();
 		for(DefaultParsedNode n : children)
 			if (name.equals(n.getName()))
 				return n;
@@ -69,16 +114,41 @@ public class DefaultParsedNode {
 	}
 
 	public void addChildren(DefaultParsedNode... children) {
+		applyMove();
 		this.children.addAll(Arrays.asList(children));
 		for(DefaultParsedNode child : children)
 			child.parent = this;
 	}
 
+	/**
+	 * Replaces the children between <code>from</code> (inclusive) and <code>to</code> (exclusive) with
+	 * <code>replacement</code>, keeping the other children as they are.
+	 */
+	public void replaceChildren(int from, int to, DefaultParsedNode... replacement) {
+		applyMove();
+		List<DefaultParsedNode> replaced = children.subList(from, to);
+		for(DefaultParsedNode child : replaced)
+			child.parent = null;
+		replaced.clear();
+		replaced.addAll(Arrays.asList(replacement));
+		for(DefaultParsedNode child : replacement)
+			child.parent = this;
+	}
+
 	public DefaultParsedNode getParent() {
 		return parent;
 	}
 
+	/**
+	 * Makes <code>parent</code> the parent of this node, without adding this node to its children. Used for the
+	 * nodes which lightweight autocompletion attaches to nodes it shares between several paths.
+	 */
+	void setParent(DefaultParsedNode parent) {
+		this.parent = parent;
+	}
+
 	public void removeAllChildren() {
+		applyMove();
 		for(DefaultParsedNode child : children)
 			child.parent = null;
 		children.clear();
@@ -91,7 +161,7 @@ public class DefaultParsedNode {
 	}
 
 	public Object evaluate(int child) {
-		return children.get(child).evaluate();
+		return getChild(child).evaluate();
 	}
 
 	public Object evaluate(String... names) {
@@ -105,7 +175,7 @@ public class DefaultParsedNode {
 	}
 
 	public String getParsedString() {
-		return matcher.parsed;
+		return getMatcher().getParsed();
 	}
 
 	public String getParsedString(String... names) {
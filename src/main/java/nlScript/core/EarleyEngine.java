@@ -0,0 +1,509 @@
+package nlScript.core;
+
+import nlScript.core.RDParser.SymbolSequence;
+import nlScript.core.RDParser.Symbols;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * A <code>ParserEngine</code> which first builds an Earley chart of the input, in O(n^3) time for input of
+ * length n. The chart tells which symbols derive which parts of the input. The search that follows visits
+ * the alternatives in the same order as the depth-first search, but only those which lead to a complete
+ * parse or to the end of the input (for autocompletion). It therefore finds the same sequences without
+ * backtracking out of dead ends, which is what makes depth-first search exponential for ambiguous grammars.
+ * Towards the end of the input, an alternative at a position is only expanded by the first sequence which reaches
+ * it, all later ones follow a single derivation of it to the end of the input. So autocompletion needs a
+ * polynomial number of sequences, instead of one for each derivation of the incomplete input.
+ *
+ * Left-recursive derivations, for which the depth-first search does not terminate, are followed as long as
+ * each recursion adds symbols which consume input and they lead to a successful parse.
+ */
+public class EarleyEngine implements ParserEngine {
+
+	@Override
+	public SymbolSequence parse(RDParser parser, ArrayList<SymbolSequence> endOfInput) {
+		Chart chart = new Chart(parser);
+		SymbolSequence ret = chart.search(endOfInput);
+		if(ret == null && chart.hasRepetitionBounds) {
+			// the chart does not know about the bounds of repetitions, and might not contain the failure
+			endOfInput.clear();
+			return parser.parseDepthFirst(endOfInput);
+		}
+		return ret;
+	}
+
+	private interface MatcherPredicate {
+		boolean test(Matcher matcher);
+	}
+
+	private static final class Item {
+		private final Production production;
+		private final int dot;
+		private final int origin;
+
+		Item(Production production, int dot, int origin) {
+			this.production = production;
+			this.dot = dot;
+			this.origin = origin;
+		}
+
+		boolean isComplete() {
+			return dot == production.getRight().length;
+		}
+
+		Symbol next() {
+			return production.getRight()[dot];
+		}
+
+		Item advance() {
+			return new Item(production, dot + 1, origin);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Item))
+				return false;
+			Item i = (Item) o;
+			return production == i.production && dot == i.dot && origin == i.origin;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * System.identityHashCode(production) + dot) + origin;
+		}
+	}
+
+	/**
+	 * Sorted set of input positions.
+	 */
+	private static final class Positions {
+		private int[] values = new int[4];
+		private int size = 0;
+
+		boolean add(int v) {
+			int idx = Arrays.binarySearch(values, 0, size, v);
+			if(idx >= 0)
+				return false;
+			idx = -idx - 1;
+			if(size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			System.arraycopy(values, idx, values, idx + 1, size - idx);
+			values[idx] = v;
+			size++;
+			return true;
+		}
+
+		void addAll(Positions o) {
+			if(o.size == 0)
+				return;
+			int[] merged = new int[size + o.size];
+			int i = 0, j = 0, n = 0;
+			while(i < size || j < o.size) {
+				int v;
+				if(j == o.size || (i < size && values[i] < o.values[j]))
+					v = values[i++];
+				else if(i == size || o.values[j] < values[i])
+					v = o.values[j++];
+				else {
+					v = values[i++];
+					j++;
+				}
+				merged[n++] = v;
+			}
+			values = merged;
+			size = n;
+		}
+
+		boolean contains(int v) {
+			return Arrays.binarySearch(values, 0, size, v) >= 0;
+		}
+	}
+
+	/**
+	 * The Earley items ending at one input position.
+	 */
+	private static final class EarleySet {
+		private final ArrayList<Item> items = new ArrayList<>();
+		private final HashSet<Item> seen = new HashSet<>();
+		// the incomplete items, by the symbol after the dot
+		private final HashMap<Symbol, ArrayList<Item>> waiting = new HashMap<>();
+		// for each symbol X the positions q such that X derives the input from q up to this set's position
+		private final HashMap<Symbol, Positions> origins = new HashMap<>();
+		// for each symbol X the positions q such that X derives the input from this set's position up to q
+		private final HashMap<Symbol, Positions> ends = new HashMap<>();
+		// the terminals which were matched at this set's position
+		private final HashMap<Terminal, Matcher> matches = new HashMap<>();
+	}
+
+	private static final class Chart {
+		private final RDParser parser;
+		private final ParseStats stats;
+		private final BNF grammar;
+		private final Lexer lexer;
+		private final int length;
+		private final EarleySet[] sets;
+		private final FirstSets firstSets;
+		private boolean hasRepetitionBounds = false;
+
+		Chart(RDParser parser) {
+			this.parser = parser;
+			this.stats = parser.getParseStats();
+			this.grammar = parser.getGrammar();
+			this.firstSets = grammar.getFirstSets();
+			this.lexer = parser.getLexer();
+			this.length = lexer.length();
+			// the end of input terminal consumes one character beyond the end
+			this.sets = new EarleySet[length + 2];
+			for(int j = 0; j < sets.length; j++)
+				sets[j] = new EarleySet();
+			build();
+		}
+
+		private void build() {
+			for(Production p : grammar.getProductionArray(BNF.ARTIFICIAL_START_SYMBOL))
+				add(0, new Item(p, 0, 0));
+
+			for(int j = 0; j < sets.length; j++) {
+				ArrayList<Item> items = sets[j].items;
+				for(int k = 0; k < items.size(); k++) {
+					Item item = items.get(k);
+					if(item.isComplete()) {
+						complete(item, j);
+						continue;
+					}
+					Symbol next = item.next();
+					if(next.isNonTerminal()) {
+						parser.checkLimits(0, null);
+						NonTerminal nt = (NonTerminal) next;
+						for(Production p : grammar.getProductionArray(nt)) {
+							hasRepetitionBounds |= p.hasRepetitionBounds();
+							add(j, new Item(p, 0, j));
+						}
+						if(isNullable(nt))
+							add(j, item.advance());
+					}
+					else if(j <= length) {
+						Matcher matcher = match((Terminal) next, j);
+						int end = j + matcher.length();
+						if(matcher.state == ParsingState.SUCCESSFUL && end < sets.length) {
+							addDerivation(next, j, end);
+							add(end, item.advance());
+						}
+						else if(stats != null && matcher.state == ParsingState.FAILED)
+							stats.alternativeFailed(item.production.getLeft());
+					}
+				}
+			}
+		}
+
+		private void add(int j, Item item) {
+			EarleySet set = sets[j];
+			if(!set.seen.add(item))
+				return;
+			set.items.add(item);
+			if(!item.isComplete())
+				set.waiting.computeIfAbsent(item.next(), s -> new ArrayList<>()).add(item);
+		}
+
+		private void complete(Item item, int j) {
+			NonTerminal left = item.production.getLeft();
+			int i = item.origin;
+			if(!addDerivation(left, i, j))
+				return;
+			ArrayList<Item> waiting = sets[i].waiting.get(left);
+			if(waiting == null)
+				return;
+			// if i == j, the list might grow while iterating
+			for(int k = 0; k < waiting.size(); k++)
+				add(j, waiting.get(k).advance());
+		}
+
+		private boolean addDerivation(Symbol symbol, int from, int to) {
+			if(!sets[to].origins.computeIfAbsent(symbol, s -> new Positions()).add(from))
+				return false;
+			sets[from].ends.computeIfAbsent(symbol, s -> new Positions()).add(to);
+			return true;
+		}
+
+		private Matcher match(Terminal terminal, int j) {
+			return sets[j].matches.computeIfAbsent(terminal, t -> {
+				lexer.setPosition(j);
+				return parser.matchTerminal(t);
+			});
+		}
+
+		SymbolSequence search(ArrayList<SymbolSequence> endOfInput) {
+			Reach success = new Reach(m -> m.state == ParsingState.SUCCESSFUL && m.end > length);
+			Reach eoi = new Reach(m -> m.state == ParsingState.END_OF_INPUT);
+
+			SymbolSequence start = new SymbolSequence(BNF.ARTIFICIAL_START_SYMBOL);
+			Stack<SymbolSequence> stack = new Stack<>();
+			if(success.contains(start.getRemaining(), 0) || eoi.contains(start.getRemaining(), 0))
+				stack.push(start);
+
+			SymbolSequence best = null;
+
+			// the alternatives which were expanded at a position towards the end of input only
+			HashSet<Item> expanded = new HashSet<>();
+
+			a: while(!stack.isEmpty()) {
+				SymbolSequence symbolSequence = stack.pop();
+				lexer.setPosition(symbolSequence.getLexerPosAtStart());
+				Symbol next = symbolSequence.getCurrentSymbol();
+				while(next.isTerminal()) {
+					Matcher matcher = parser.matchTerminal((Terminal) next);
+					symbolSequence.addMatcher(matcher);
+					if(stats != null && matcher.state == ParsingState.FAILED)
+						stats.alternativeFailed(symbolSequence.getNonTerminalOfCurrentSymbol());
+					if(matcher.state == ParsingState.END_OF_INPUT) {
+						endOfInput.add(symbolSequence);
+						if(best == null || matcher.isBetterThan(best.getLastMatcher()))
+							best = symbolSequence;
+					}
+					if(matcher.state != ParsingState.SUCCESSFUL)
+						continue a;
+					symbolSequence.incrementPosition();
+					lexer.fwd(matcher.length());
+					if(lexer.isDone())
+						return symbolSequence;
+					next = symbolSequence.getCurrentSymbol();
+				}
+
+				parser.checkLimits(stack.size(), best);
+				int pos = lexer.getPosition();
+				NonTerminal u = (NonTerminal) next;
+				boolean followingReachesEnd = followingReach(eoi, symbolSequence, u, pos);
+				boolean lastViable = true;
+				for(Production alternate : grammar.getReversedProductionArray(u)) {
+					if(!symbolSequence.canReplaceCurrentSymbol(alternate))
+						continue;
+					SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, pos);
+					if(stats != null)
+						stats.sequenceCreated();
+					Symbols remaining = nextSequence.getRemaining();
+					int recursion = leftRecursion(nextSequence);
+					if(recursion == CYCLE)
+						continue;
+					if(success.contains(remaining, pos)) {
+						stack.push(nextSequence);
+					}
+					// left recursion is only followed towards a successful parse, autocompletion would not end otherwise
+					else if(recursion == NONE && eoi.contains(remaining, pos)) {
+						// if the end of input can only be reached within the alternative, the ways to get there are
+						// the same for all sequences which expand it here, so they are only searched once. The last
+						// alternative is always followed, so that each sequence reaches the end of input at least once,
+						// and the last one which does is the same as with depth-first search
+						boolean newItem = expanded.add(new Item(alternate, 0, pos));
+						if(lastViable || followingReachesEnd || newItem)
+							stack.push(nextSequence);
+						lastViable = false;
+					}
+				}
+			}
+			if(best != null)
+				return best;
+			return findFailure();
+		}
+
+		/**
+		 * Checks whether the symbols after the current <code>NonTerminal</code> of <code>sequence</code>
+		 * can reach the end of input, after <code>nonTerminal</code> derived the input from <code>pos</code>
+		 * up to some position.
+		 */
+		private boolean followingReach(Reach eoi, SymbolSequence sequence, NonTerminal nonTerminal, int pos) {
+			Symbols following = sequence.getRemaining().next;
+			Positions ends = sets[pos].ends.get(nonTerminal);
+			if(following == null || ends == null)
+				return false;
+			for(int k = 0; k < ends.size; k++)
+				if(eoi.contains(following, ends.values[k]))
+					return true;
+			return false;
+		}
+
+		/**
+		 * Without a successful parse and without reaching the end of input, the depth-first search returns
+		 * the last sequence which failed with the maximum extent, i.e. the one with the last alternatives.
+		 */
+		private SymbolSequence findFailure() {
+			int max = -1;
+			for(int j = 0; j <= length; j++) {
+				for(Matcher m : sets[j].matches.values())
+					if(m.state == ParsingState.FAILED)
+						max = Math.max(max, m.end);
+			}
+			if(max < 0)
+				return null;
+			final int extent = max;
+			Reach failure = new Reach(m -> m.state == ParsingState.FAILED && m.end == extent);
+
+			SymbolSequence symbolSequence = new SymbolSequence(BNF.ARTIFICIAL_START_SYMBOL);
+			while(true) {
+				lexer.setPosition(symbolSequence.getLexerPosAtStart());
+				Symbol next = symbolSequence.getCurrentSymbol();
+				while(next.isTerminal()) {
+					Matcher matcher = ((Terminal) next).matches(lexer);
+					symbolSequence.addMatcher(matcher);
+					if(matcher.state != ParsingState.SUCCESSFUL)
+						return symbolSequence;
+					symbolSequence.incrementPosition();
+					lexer.fwd(matcher.length());
+					next = symbolSequence.getCurrentSymbol();
+				}
+
+				int pos = lexer.getPosition();
+				SymbolSequence chosen = null;
+				for(Production alternate : grammar.getReversedProductionArray((NonTerminal) next)) {
+					if(!symbolSequence.canReplaceCurrentSymbol(alternate))
+						continue;
+					SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, pos);
+					if(failure.contains(nextSequence.getRemaining(), pos) && leftRecursion(nextSequence) == NONE) {
+						chosen = nextSequence;
+						break;
+					}
+				}
+				if(chosen == null && hasRepetitionBounds)
+					return null;
+				if(chosen == null)
+					throw new RuntimeException("Failed to reproduce parse error at position " + pos + " (left-recursive grammar?)");
+				symbolSequence = chosen;
+			}
+		}
+
+		private static final int NONE = 0;
+		private static final int GROWING = 1;
+		private static final int CYCLE = 2;
+
+		/**
+		 * Checks whether the <code>NonTerminal</code> replaced to create <code>sequence</code> was derived,
+		 * without consuming input, from the same <code>NonTerminal</code> at the same position.
+		 *
+		 * @return <code>CYCLE</code> if no symbols were added which must consume input, i.e. expanding it would
+		 * lead to an infinite descent, <code>GROWING</code> if such symbols were added, <code>NONE</code> otherwise.
+		 */
+		private int leftRecursion(SymbolSequence sequence) {
+			SymbolSequence parent = sequence.getParent();
+			NonTerminal replaced = sequence.getProduction().getLeft();
+			int pos = sequence.getLexerPosAtStart();
+			Symbols following = parent.getRemaining().next;
+			int nFollowing = parent.size() - parent.getPos() - 1;
+			int ret = NONE;
+			for(SymbolSequence a = parent; a.getParent() != null && a.getLexerPosAtStart() == pos; a = a.getParent()) {
+				if(!a.getProduction().getLeft().equals(replaced))
+					continue;
+				// the replaced symbol was derived from a's replacement if the symbols following a's replacement
+				// are still intact after it
+				SymbolSequence ap = a.getParent();
+				Symbols followingA = ap.getRemaining().next;
+				int skip = nFollowing - (ap.size() - ap.getPos() - 1);
+				if(skip < 0)
+					continue;
+				boolean consumes = false;
+				Symbols s = following;
+				for(int i = 0; i < skip; i++) {
+					consumes |= !isNullable(s.symbol);
+					s = s.next;
+				}
+				if(s != followingA)
+					continue;
+				if(!consumes)
+					return CYCLE;
+				ret = GROWING;
+			}
+			return ret;
+		}
+
+		private boolean isNullable(Symbol symbol) {
+			if(symbol.isTerminal())
+				return symbol.isEpsilon();
+			FirstSets.FirstSet first = firstSets.get((NonTerminal) symbol);
+			return first != null && first.isNullable();
+		}
+
+		/**
+		 * For a sequence of remaining symbols, whether the symbols derive the input from a given position up to a
+		 * <code>Terminal</code> whose <code>Matcher</code> fulfills a given predicate.
+		 */
+		private final class Reach {
+			// for each symbol the positions from which it can derive input up to a matching terminal
+			private final HashMap<Symbol, Positions> hits = new HashMap<>();
+			// the positions from which remaining symbols are known to reach, or not to reach, a matching terminal
+			private final IdentityHashMap<Symbols, Positions> reaching = new IdentityHashMap<>();
+			private final IdentityHashMap<Symbols, Positions> notReaching = new IdentityHashMap<>();
+
+			Reach(MatcherPredicate predicate) {
+				ArrayDeque<Symbol> symbols = new ArrayDeque<>();
+				ArrayDeque<Integer> positions = new ArrayDeque<>();
+				for(int j = 0; j <= length; j++) {
+					for(Terminal t : sets[j].matches.keySet()) {
+						if(predicate.test(sets[j].matches.get(t)) && hits.computeIfAbsent(t, s -> new Positions()).add(j)) {
+							symbols.add(t);
+							positions.add(j);
+						}
+					}
+				}
+				while(!symbols.isEmpty()) {
+					Symbol symbol = symbols.poll();
+					int j = positions.poll();
+					ArrayList<Item> waiting = sets[j].waiting.get(symbol);
+					if(waiting == null)
+						continue;
+					for(Item item : waiting) {
+						NonTerminal left = item.production.getLeft();
+						if(hits.computeIfAbsent(left, s -> new Positions()).add(item.origin)) {
+							symbols.add(left);
+							positions.add(item.origin);
+						}
+					}
+				}
+			}
+
+			/**
+			 * Searches the pairs of remaining symbols and input position which follow from deriving the first
+			 * symbol, so that only the positions which are asked for are visited.
+			 */
+			boolean contains(Symbols remaining, int pos) {
+				IdentityHashMap<Symbols, Positions> visited = new IdentityHashMap<>();
+				ArrayDeque<Symbols> todoSymbols = new ArrayDeque<>();
+				ArrayDeque<Integer> todoPositions = new ArrayDeque<>();
+				todoSymbols.push(remaining);
+				todoPositions.push(pos);
+				boolean found = false;
+				while(!todoSymbols.isEmpty()) {
+					Symbols s = todoSymbols.pop();
+					int p = todoPositions.pop();
+					if(contains(notReaching, s, p) || !visited.computeIfAbsent(s, k -> new Positions()).add(p))
+						continue;
+					if(contains(reaching, s, p) || contains(hits, s.symbol, p)) {
+						found = true;
+						break;
+					}
+					Positions ends = s.next == null ? null : sets[p].ends.get(s.symbol);
+					if(ends == null)
+						continue;
+					for(int k = 0; k < ends.size; k++) {
+						todoSymbols.push(s.next);
+						todoPositions.push(ends.values[k]);
+					}
+				}
+				if(found)
+					reaching.computeIfAbsent(remaining, k -> new Positions()).add(pos);
+				else
+					visited.forEach((s, positions) -> notReaching.computeIfAbsent(s, k -> new Positions()).addAll(positions));
+				return found;
+			}
+
+			private <K> boolean contains(Map<K, Positions> map, K key, int pos) {
+				Positions positions = map.get(key);
+				return positions != null && positions.contains(pos);
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package nlScript.core;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * FIRST sets and nullability of the productions of a <code>BNF</code>: the characters with which input
+ * derived from a production can start, and whether it can derive the empty string.
+ *
+ * Characters are kept in a bitmap for ASCII, for all other characters the <code>Terminal</code>s which
+ * could start the input are asked directly.
+ */
+class FirstSets {
+
+	static final class FirstSet {
+		private long low = 0;   // characters 0-63
+		private long high = 0;  // characters 64-127
+		private final LinkedHashSet<Terminal> nonAscii = new LinkedHashSet<>();
+		private boolean nullable = false;
+
+		boolean isNullable() {
+			return nullable;
+		}
+
+		boolean contains(char c) {
+			if(c < 64)
+				return (low & (1L << c)) != 0;
+			if(c < 128)
+				return (high & (1L << (c - 64))) != 0;
+			for(Terminal t : nonAscii)
+				if(t.canStartWith(c))
+					return true;
+			return false;
+		}
+
+		/**
+		 * @return whether input starting with <code>c</code> could be derived from this set's symbol(s),
+		 * possibly followed by input derived from the symbols after them.
+		 */
+		boolean canStartWith(char c) {
+			return nullable || contains(c);
+		}
+
+		private boolean addAll(FirstSet o) {
+			long l = low | o.low;
+			long h = high | o.high;
+			boolean changed = l != low || h != high;
+			low = l;
+			high = h;
+			changed |= nonAscii.addAll(o.nonAscii);
+			return changed;
+		}
+
+		private static FirstSet of(Terminal t) {
+			FirstSet set = new FirstSet();
+			for(char c = 0; c < 128; c++) {
+				if(t.canStartWith(c)) {
+					if(c < 64)
+						set.low |= 1L << c;
+					else
+						set.high |= 1L << (c - 64);
+				}
+			}
+			boolean asciiLiteral = t instanceof Terminal.Literal
+					&& !((Terminal.Literal) t).getLiteral().isEmpty()
+					&& ((Terminal.Literal) t).getLiteral().charAt(0) < 128;
+			if(!asciiLiteral)
+				set.nonAscii.add(t);
+			return set;
+		}
+	}
+
+	private static final FirstSet[] NONE = new FirstSet[0];
+
+	private final ProductionTable table;
+
+	// FIRST sets of the non-terminals, by their index in the ProductionTable
+	private final FirstSet[] nonTerminals;
+
+	private final HashMap<Terminal, FirstSet> terminals = new HashMap<>();
+
+	// FIRST sets of the right-hand sides, in the order of ProductionTable.getReversedProductions()
+	private final FirstSet[][] reversedProductions;
+
+	// tries of the literals the alternatives start with, for non-terminals with many such alternatives
+	private final LiteralTrie[] literalTries;
+
+	FirstSets(ProductionTable table) {
+		this.table = table;
+		int n = table.size();
+		nonTerminals = new FirstSet[n];
+		for(int index = 0; index < n; index++)
+			nonTerminals[index] = new FirstSet();
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int index = 0; index < n; index++) {
+				FirstSet lhs = nonTerminals[index];
+				Production[] alternatives = table.getReversedProductions(index);
+				int[][] rightIndices = table.getReversedRightIndices(index);
+				for(int i = 0; i < alternatives.length; i++) {
+					FirstSet rhs = ofRightHandSide(alternatives[i], rightIndices[i]);
+					changed |= lhs.addAll(rhs);
+					if(rhs.nullable && !lhs.nullable) {
+						lhs.nullable = true;
+						changed = true;
+					}
+				}
+			}
+		}
+		reversedProductions = new FirstSet[n][];
+		literalTries = new LiteralTrie[n];
+		for(int index = 0; index < n; index++) {
+			Production[] alternatives = table.getReversedProductions(index);
+			int[][] rightIndices = table.getReversedRightIndices(index);
+			FirstSet[] sets = new FirstSet[alternatives.length];
+			for(int i = 0; i < alternatives.length; i++)
+				sets[i] = ofRightHandSide(alternatives[i], rightIndices[i]);
+			reversedProductions[index] = sets;
+			literalTries[index] = LiteralTrie.create(alternatives, rightIndices, table);
+		}
+	}
+
+	/**
+	 * @return the <code>LiteralTrie</code> of the alternatives of the non-terminal with the given index in the
+	 * <code>ProductionTable</code>, in the order of <code>ProductionTable.getReversedProductions()</code>, or
+	 * <code>null</code> if there is none.
+	 */
+	LiteralTrie getLiteralTrie(int index) {
+		return index != ProductionTable.NONE ? literalTries[index] : null;
+	}
+
+	LiteralTrie getLiteralTrie(NonTerminal left) {
+		return getLiteralTrie(table.indexOf(left));
+	}
+
+	FirstSet[] getReversedProductionFirstSets(int index) {
+		return index != ProductionTable.NONE ? reversedProductions[index] : NONE;
+	}
+
+	FirstSet[] getReversedProductionFirstSets(NonTerminal left) {
+		return getReversedProductionFirstSets(table.indexOf(left));
+	}
+
+	FirstSet get(int index) {
+		return index != ProductionTable.NONE ? nonTerminals[index] : null;
+	}
+
+	FirstSet get(NonTerminal nonTerminal) {
+		return get(table.indexOf(nonTerminal));
+	}
+
+	private FirstSet ofRightHandSide(Production p, int[] rightIndices) {
+		FirstSet ret = new FirstSet();
+		Symbol[] rhs = p.getRight();
+		for(int i = 0; i < rhs.length; i++) {
+			Symbol s = rhs[i];
+			if(s.isEpsilon())
+				continue;
+			if(s.isTerminal()) {
+				ret.addAll(terminals.computeIfAbsent((Terminal) s, FirstSet::of));
+				return ret;
+			}
+			FirstSet nt = get(rightIndices[i]);
+			if(nt == null)
+				return ret;
+			ret.addAll(nt);
+			if(!nt.nullable)
+				return ret;
+		}
+		ret.nullable = true;
+		return ret;
+	}
+}
@@ -1,13 +1,26 @@
 package nlScript.core;
 
+import java.nio.CharBuffer;
+
+/**
+ * Provides the input to the parser. The input can be any <code>CharSequence</code>, e.g. a
+ * <code>CharBuffer</code> decoded from a memory-mapped file. <code>String</code>s and <code>CharBuffer</code>s
+ * are never copied as a whole, so a <code>CharBuffer</code> must not change while the parse result is used:
+ * <code>Matcher</code>s refer to the input to create their parsed strings lazily. All other inputs, e.g. a
+ * <code>StringBuilder</code>, are copied once.
+ */
 public class Lexer {
 
-	private final String input;
+	private final CharSequence input;
 
 	private int pos = 0;
 
-	public Lexer(String input) {
-		this.input = input;
+	public Lexer(CharSequence input) {
+		this.input = input instanceof String || input instanceof CharBuffer ? input : input.toString();
+	}
+
+	public CharSequence getInput() {
+		return input;
 	}
 
 	public int getPosition() {
@@ -31,14 +44,29 @@ public class Lexer {
 		return p < input.length() ? input.charAt(p) : '$';
 	}
 
+	public int length() {
+		return input.length();
+	}
+
 	public String substring(int from, int to) {
+		return subSequence(from, to).toString();
+	}
+
+	public String substring(int from) {
+		return subSequence(from).toString();
+	}
+
+	/**
+	 * @return a read-only view of the input between <code>from</code> and <code>to</code>, without copying it
+	 */
+	public CharSequence subSequence(int from, int to) {
 		if(to > input.length())
 			to = input.length();
-		return input.substring(from, to);
+		return CharBuffer.wrap(input, from, to);
 	}
 
-	public String substring(int from) {
-		return input.substring(from);
+	public CharSequence subSequence(int from) {
+		return subSequence(from, input.length());
 	}
 
 	public boolean isDone() {
@@ -55,7 +83,7 @@ public class Lexer {
 
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append(input.substring(0, pos)).append(" -- ").append(input.substring(pos));
+		sb.append(input, 0, pos).append(" -- ").append(input, pos, input.length());
 		return sb.toString();
 	}
 }
@@ -0,0 +1,139 @@
+package nlScript.core;
+
+import java.util.Arrays;
+
+/**
+ * A character trie of the literals with which the alternatives of a <code>NonTerminal</code> start, e.g. the
+ * alternatives of an <code>Or</code> over many words. Walking the input along the trie selects the alternatives
+ * which can match it in time proportional to the length of the match, instead of matching every literal.
+ *
+ * An alternative starts with a literal if its right-hand side does, or if it starts with a
+ * <code>NonTerminal</code> with a single production which does. Alternatives which do not start with
+ * a literal are always selected.
+ */
+final class LiteralTrie {
+
+	/**
+	 * The minimum number of alternatives starting with a literal for which a trie is built.
+	 */
+	static final int MIN_LITERALS = 4;
+
+	private static final int MAX_DEPTH = 16;
+
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		// the alternatives whose literal ends at this node
+		private int[] ending = new int[0];
+
+		private Node getOrCreateChild(char c) {
+			int idx = Arrays.binarySearch(keys, c);
+			if(idx >= 0)
+				return children[idx];
+			idx = -idx - 1;
+			Node child = new Node();
+			char[] k = new char[keys.length + 1];
+			Node[] ch = new Node[children.length + 1];
+			System.arraycopy(keys, 0, k, 0, idx);
+			System.arraycopy(children, 0, ch, 0, idx);
+			k[idx] = c;
+			ch[idx] = child;
+			System.arraycopy(keys, idx, k, idx + 1, keys.length - idx);
+			System.arraycopy(children, idx, ch, idx + 1, children.length - idx);
+			keys = k;
+			children = ch;
+			return child;
+		}
+
+		private void markSubtree(boolean[] selected) {
+			for(int a : ending)
+				selected[a] = true;
+			for(Node child : children)
+				child.markSubtree(selected);
+		}
+	}
+
+	private final Node root = new Node();
+
+	private final boolean[] withoutLiteral;
+
+	private LiteralTrie(int nAlternatives) {
+		withoutLiteral = new boolean[nAlternatives];
+	}
+
+	/**
+	 * @return the trie for the specified alternatives, or <code>null</code> if fewer than
+	 * <code>MIN_LITERALS</code> of them start with a literal.
+	 */
+	static LiteralTrie create(Production[] alternatives, int[][] rightIndices, ProductionTable table) {
+		LiteralTrie trie = new LiteralTrie(alternatives.length);
+		int nLiterals = 0;
+		for(int a = 0; a < alternatives.length; a++) {
+			Terminal.Literal literal = leadingLiteral(alternatives[a], rightIndices[a], table);
+			if(literal == null) {
+				trie.withoutLiteral[a] = true;
+				continue;
+			}
+			Node node = trie.root;
+			String s = literal.getLiteral();
+			for(int i = 0; i < s.length(); i++)
+				node = node.getOrCreateChild(s.charAt(i));
+			node.ending = Arrays.copyOf(node.ending, node.ending.length + 1);
+			node.ending[node.ending.length - 1] = a;
+			nLiterals++;
+		}
+		return nLiterals < MIN_LITERALS ? null : trie;
+	}
+
+	private static Terminal.Literal leadingLiteral(Production p, int[] rightIndices, ProductionTable table) {
+		for(int depth = 0; depth < MAX_DEPTH; depth++) {
+			Symbol[] rhs = p.getRight();
+			if(rhs.length == 0)
+				return null;
+			Symbol first = rhs[0];
+			if(first instanceof Terminal.Literal)
+				return ((Terminal.Literal) first).getLiteral().isEmpty() ? null : (Terminal.Literal) first;
+			if(!first.isNonTerminal())
+				return null;
+			int index = rightIndices[0];
+			Production[] productions = table.getReversedProductions(index);
+			if(productions.length != 1)
+				return null;
+			p = productions[0];
+			rightIndices = table.getReversedRightIndices(index)[0];
+		}
+		return null;
+	}
+
+	/**
+	 * Marks the alternatives which can match the input at the current lexer position in <code>selected</code>:
+	 * those whose literal is matched entirely, those whose literal is matched until the end of the input, and
+	 * those which do not start with a literal.
+	 *
+	 * @return the maximum end position of the failing matches of the alternatives which are not selected,
+	 *         or -1 if there are none
+	 */
+	int select(Lexer lexer, boolean[] selected) {
+		System.arraycopy(withoutLiteral, 0, selected, 0, withoutLiteral.length);
+		int pos = lexer.getPosition();
+		int failedEnd = -1;
+		Node node = root;
+		for(int k = 0; ; k++) {
+			for(int a : node.ending)
+				selected[a] = true;
+			if(node.keys.length == 0)
+				break;
+			if(lexer.isAtEnd(k)) {
+				node.markSubtree(selected);
+				break;
+			}
+			int idx = Arrays.binarySearch(node.keys, lexer.peek(k));
+			if(idx < 0 || node.keys.length > 1)
+				failedEnd = pos + k + 1;
+			if(idx < 0)
+				break;
+			node = node.children[idx];
+		}
+		return failedEnd;
+	}
+}
@@ -1,17 +1,65 @@
 package nlScript.core;
 
+/**
+ * The result of matching a symbol against the input, between <code>pos</code> (inclusive) and
+ * <code>end</code> (exclusive). The parsed string is only created when it is requested, from the input,
+ * which therefore must not change afterwards (see <code>Lexer</code>).
+ */
 public class Matcher {
 
 	public final ParsingState state;
 	public final int pos;
-	public final String parsed;
+	public final int end;
+
+	final CharSequence input;
+	private String parsed;
 
 	public Matcher(ParsingState state, int pos, String parsed) {
 		this.state = state;
 		this.pos = pos;
+		this.end = pos + parsed.length();
+		this.input = null;
 		this.parsed = parsed;
 	}
 
+	/**
+	 * Creates a <code>Matcher</code> for the input between <code>pos</code> and <code>end</code>.
+	 * Positions beyond the end of the input, as matched by <code>Terminal.END_OF_INPUT</code>,
+	 * are represented by a space.
+	 */
+	public Matcher(ParsingState state, CharSequence input, int pos, int end) {
+		this.state = state;
+		this.pos = pos;
+		this.end = end;
+		this.input = input;
+		this.parsed = null;
+	}
+
+	/**
+	 * @return the input this matcher refers to, or <code>null</code> if it was created from the parsed string.
+	 */
+	public CharSequence getInput() {
+		return input;
+	}
+
+	public int length() {
+		return end - pos;
+	}
+
+	public String getParsed() {
+		String ret = parsed;
+		if(ret == null) {
+			int inputEnd = Math.min(end, input.length());
+			StringBuilder sb = new StringBuilder(end - pos);
+			if(pos < inputEnd)
+				sb.append(input, pos, inputEnd);
+			for(int i = Math.max(pos, inputEnd); i < end; i++)
+				sb.append(' ');
+			ret = parsed = sb.toString();
+		}
+		return ret;
+	}
+
 	public boolean isBetterThan(Matcher o) {
 		if(o == null)
 			return true;
@@ -19,12 +67,10 @@ public class Matcher {
 			return true;
 		if(o.state.isBetterThan(this.state))
 			return false;
-		int tParsedLength = pos + parsed.length();
-		int oParsedLength = o.pos + o.parsed.length();
-		return tParsedLength >= oParsedLength;
+		return end >= o.end;
 	}
 
 	public String toString() {
-		return state.toString() + ": '" + parsed + "' (" + pos + ")";
+		return state.toString() + ": '" + getParsed() + "' (" + pos + ")";
 	}
 }
@@ -1,16 +1,15 @@
 package nlScript.core;
 
-import nlScript.util.RandomString;
-
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NonTerminal extends Symbol {
 
-	private static final RandomString rs = new RandomString(8);
+	private static final AtomicLong uniqueSymbols = new AtomicLong();
 
 	public NonTerminal(String symbol) {
-		super(symbol != null ? symbol : makeRandomSymbol());
+		super(symbol != null ? symbol : makeUniqueSymbol());
 	}
 
 	@Override
@@ -69,7 +68,21 @@ public class NonTerminal extends Symbol {
 		return "<" + getSymbol() + ">";
 	}
 
+	/**
+	 * Returns a name for anonymous symbols, which is different from all names returned before. Names are
+	 * numbered consecutively, starting with '#', which identifiers in patterns can't contain. The counter is
+	 * shared by the whole process; symbols created for a grammar use <code>BNF.makeUniqueSymbol()</code>
+	 * instead, so that their names don't depend on other grammars.
+	 */
+	public static String makeUniqueSymbol() {
+		return "#" + uniqueSymbols.getAndIncrement();
+	}
+
+	/**
+	 * @deprecated names are not random anymore, use <code>makeUniqueSymbol()</code>
+	 */
+	@Deprecated
 	public static String makeRandomSymbol() {
-		return rs.nextString();
+		return makeUniqueSymbol();
 	}
 }
@@ -0,0 +1,45 @@
+package nlScript.core;
+
+/**
+ * Limits the work of a single parse: the number of <code>NonTerminal</code> expansions, the number of
+ * alternatives waiting on the parser's stack, and the time it takes. A parse which exceeds its budget is
+ * aborted with a <code>ParseBudgetExceededException</code>.
+ */
+public final class ParseBudget {
+
+	public static final ParseBudget UNLIMITED = new ParseBudget(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	private final long maxExpansions;
+	private final int maxStackSize;
+	private final long maxMillis;
+
+	/**
+	 * @param maxExpansions the maximum number of <code>NonTerminal</code>s which are expanded
+	 * @param maxStackSize the maximum number of alternatives waiting on the stack
+	 * @param maxMillis the maximum duration of the parse, in milliseconds
+	 */
+	public ParseBudget(long maxExpansions, int maxStackSize, long maxMillis) {
+		if(maxExpansions <= 0 || maxStackSize <= 0 || maxMillis <= 0)
+			throw new IllegalArgumentException("Parse budget limits must be positive");
+		this.maxExpansions = maxExpansions;
+		this.maxStackSize = maxStackSize;
+		this.maxMillis = maxMillis;
+	}
+
+	public long getMaxExpansions() {
+		return maxExpansions;
+	}
+
+	public int getMaxStackSize() {
+		return maxStackSize;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "ParseBudget(maxExpansions=" + maxExpansions + ", maxStackSize=" + maxStackSize + ", maxMillis=" + maxMillis + ")";
+	}
+}
@@ -209,8 +209,8 @@ public class ParseDebugger implements IParseDebugger {
 				grammar.sequence(null, Terminal.literal("?").withName()).       setEvaluator(pn -> Range.OPTIONAL).withName("optional"),
 				grammar.sequence(null, Terminal.literal("+").withName()).       setEvaluator(pn -> Range.PLUS).withName("plus"),
 				grammar.sequence(null, Terminal.literal("*").withName()).       setEvaluator(pn -> Range.STAR).withName("star"),
-				grammar.sequence(null, grammar.INTEGER_RANGE.withName("range")).setEvaluator(pn -> pn.evaluate(0)).withName("range"),
-				grammar.sequence(null,       grammar.INTEGER.withName("int")).  setEvaluator(pn -> new Range((int)pn.evaluate(0))).withName("fixed")
+				grammar.sequence(null, grammar.getIntegerRange().withName("range")).setEvaluator(pn -> pn.evaluate(0)).withName("range"),
+				grammar.sequence(null,      grammar.getInteger().withName("int")).  setEvaluator(pn -> new Range((int)pn.evaluate(0))).withName("fixed")
 		);
 
 		Rule r = grammar.sequence("variable",
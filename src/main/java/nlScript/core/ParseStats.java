@@ -0,0 +1,138 @@
+package nlScript.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of a parse, filled by an <code>RDParser</code> to which it was passed with
+ * <code>setParseStats()</code>. They are reset at the start of each parse.
+ */
+public class ParseStats {
+
+	private long sequencesCreated = 0;
+	private final HashMap<Terminal, Long> terminalAttempts = new HashMap<>();
+	private final HashMap<NonTerminal, Long> failedAlternatives = new HashMap<>();
+	private int maxStackDepth = 0;
+	private long searchNanos = 0;
+	private long treeBuildingNanos = 0;
+	private long autocompletionNanos = 0;
+
+	void reset() {
+		sequencesCreated = 0;
+		terminalAttempts.clear();
+		failedAlternatives.clear();
+		maxStackDepth = 0;
+		searchNanos = 0;
+		treeBuildingNanos = 0;
+		autocompletionNanos = 0;
+	}
+
+	void sequenceCreated() {
+		sequencesCreated++;
+	}
+
+	void terminalAttempted(Terminal terminal) {
+		terminalAttempts.merge(terminal, 1L, Long::sum);
+	}
+
+	void alternativeFailed(NonTerminal nonTerminal) {
+		if(nonTerminal != null)
+			failedAlternatives.merge(nonTerminal, 1L, Long::sum);
+	}
+
+	void stackDepth(int depth) {
+		maxStackDepth = Math.max(maxStackDepth, depth);
+	}
+
+	void addSearchNanos(long nanos) {
+		searchNanos += nanos;
+	}
+
+	void addTreeBuildingNanos(long nanos) {
+		treeBuildingNanos += nanos;
+	}
+
+	void addAutocompletionNanos(long nanos) {
+		autocompletionNanos += nanos;
+	}
+
+	/**
+	 * @return the number of <code>SymbolSequence</code>s created by expanding a <code>NonTerminal</code>
+	 */
+	public long getSequencesCreated() {
+		return sequencesCreated;
+	}
+
+	/**
+	 * @return for each <code>Terminal</code>, how often it was matched against the input
+	 */
+	public Map<Terminal, Long> getTerminalAttempts() {
+		return Collections.unmodifiableMap(terminalAttempts);
+	}
+
+	/**
+	 * @return for each <code>NonTerminal</code>, how many of the alternatives tried for it failed at one of the
+	 * terminals of its productions. Alternatives skipped by pruning are not counted. With <code>ParserEngine.EARLEY</code>,
+	 * these include the items of the chart which failed.
+	 */
+	public Map<NonTerminal, Long> getFailedAlternatives() {
+		return Collections.unmodifiableMap(failedAlternatives);
+	}
+
+	/**
+	 * @return the maximum number of alternatives on the parser's stack when a <code>NonTerminal</code> was expanded
+	 */
+	public int getMaxStackDepth() {
+		return maxStackDepth;
+	}
+
+	/**
+	 * @return the time spent searching the derivation of the input, in nanoseconds
+	 */
+	public long getSearchNanos() {
+		return searchNanos;
+	}
+
+	/**
+	 * @return the time spent building the parse tree of the result, in nanoseconds
+	 */
+	public long getTreeBuildingNanos() {
+		return treeBuildingNanos;
+	}
+
+	/**
+	 * @return the time spent collecting autocompletions, in nanoseconds
+	 */
+	public long getAutocompletionNanos() {
+		return autocompletionNanos;
+	}
+
+	private static <K> List<Map.Entry<K, Long>> top(Map<K, Long> map, int n) {
+		List<Map.Entry<K, Long>> entries = new ArrayList<>(map.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		return entries.subList(0, Math.min(n, entries.size()));
+	}
+
+	/**
+	 * Summarizes the statistics, with the 10 most frequently attempted terminals and the 10 non-terminals
+	 * with the most failed alternatives.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Sequences created:     ").append(sequencesCreated).append('\n');
+		sb.append("Max stack depth:       ").append(maxStackDepth).append('\n');
+		sb.append("Search:                ").append(searchNanos / 1000000.0).append(" ms\n");
+		sb.append("Tree building:         ").append(treeBuildingNanos / 1000000.0).append(" ms\n");
+		sb.append("Autocompletion:        ").append(autocompletionNanos / 1000000.0).append(" ms\n");
+		sb.append("Terminal attempts:\n");
+		for(Map.Entry<Terminal, Long> e : top(terminalAttempts, 10))
+			sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+		sb.append("Failed alternatives:\n");
+		for(Map.Entry<NonTerminal, Long> e : top(failedAlternatives, 10))
+			sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+		return sb.toString();
+	}
+}
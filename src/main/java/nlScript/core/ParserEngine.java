@@ -0,0 +1,30 @@
+package nlScript.core;
+
+import nlScript.core.RDParser.SymbolSequence;
+
+import java.util.ArrayList;
+
+/**
+ * Searches the derivation of the input of a <code>RDParser</code>. Engines differ in how they search,
+ * but must find the same sequences: the ones the depth-first search of <code>DEPTH_FIRST</code> finds.
+ */
+public interface ParserEngine {
+
+	/**
+	 * Depth-first search with backtracking, the default.
+	 */
+	ParserEngine DEPTH_FIRST = (parser, endOfInput) -> parser.parseDepthFirst(endOfInput);
+
+	/**
+	 * Chart parsing with polynomial worst-case time, see <code>EarleyEngine</code>.
+	 */
+	ParserEngine EARLEY = new EarleyEngine();
+
+	/**
+	 * @param parser the parser providing grammar and lexer
+	 * @param endOfInput receives all sequences which reached the end of the input, in depth-first order
+	 * @return the first sequence (in depth-first order) which parsed the entire input, or, if there is none,
+	 *         the sequence which failed last with the best <code>Matcher</code>
+	 */
+	SymbolSequence parse(RDParser parser, ArrayList<SymbolSequence> endOfInput);
+}
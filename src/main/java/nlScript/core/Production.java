@@ -13,10 +13,22 @@ public class Production {
 	private AstBuilder astBuilder = null;
 	private ExtensionListener extensionListener = null;
 
+	private int minEntries = 0;
+	private int maxEntries = Integer.MAX_VALUE;
+
 	public interface AstBuilder {
 		void buildAST(DefaultParsedNode parent, DefaultParsedNode... children);
 
 		AstBuilder DEFAULT = DefaultParsedNode::addChildren;
+
+		/**
+		 * For repetitions of the form <code>A -> entry A</code>: adds the first child, followed by the children
+		 * of the last child. Chains of such productions are flattened by the parser in a single pass.
+		 */
+		AstBuilder REPETITION = (parent, children) -> {
+			parent.addChildren(children[0]);
+			parent.addChildren(children[children.length - 1].getChildren());
+		};
 	}
 
 	public interface ExtensionListener {
@@ -28,6 +40,25 @@ public class Production {
 		this.right = removeEpsilon(right);
 	}
 
+	/**
+	 * Creates a copy of <code>other</code>, with the same AST builder, extension listener and repetition bounds.
+	 */
+	protected Production(Production other) {
+		this.left = other.left;
+		this.right = other.right.clone();
+		this.astBuilder = other.astBuilder;
+		this.extensionListener = other.extensionListener;
+		this.minEntries = other.minEntries;
+		this.maxEntries = other.maxEntries;
+	}
+
+	/**
+	 * @return a copy of this production which does not change when this production is changed.
+	 */
+	public Production copy() {
+		return new Production(this);
+	}
+
 	private static Symbol[] removeEpsilon(Symbol[] arr) {
 		List<Symbol> list = new ArrayList<>(Arrays.asList(arr));
 		int idx = list.indexOf(Terminal.EPSILON);
@@ -49,6 +80,33 @@ public class Production {
 		this.astBuilder = astBuilder;
 	}
 
+	boolean isRepetition() {
+		return astBuilder == AstBuilder.REPETITION;
+	}
+
+	/**
+	 * Bounds the number of entries of a repetition <code>A -> entry A | epsilon</code>, given for both of its
+	 * productions. The repeating production (with <code>AstBuilder.REPETITION</code>) is only applied while less
+	 * than <code>max</code> entries were parsed, the other one only after at least <code>min</code> entries.
+	 */
+	public void setRepetitionBounds(int min, int max) {
+		if(min < 0 || max < min)
+			throw new IllegalArgumentException("Invalid repetition bounds: " + min + "-" + max);
+		this.minEntries = min;
+		this.maxEntries = max;
+	}
+
+	boolean hasRepetitionBounds() {
+		return minEntries > 0 || maxEntries < Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param nEntries the number of entries of the repetition which were parsed before the symbol to be replaced
+	 */
+	boolean canBeApplied(int nEntries) {
+		return isRepetition() ? nEntries < maxEntries : nEntries >= minEntries;
+	}
+
 	public void builtAST(DefaultParsedNode parent, DefaultParsedNode... children) {
 		if(astBuilder != null) {
 			astBuilder.buildAST(parent, children);
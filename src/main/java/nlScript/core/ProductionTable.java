@@ -0,0 +1,103 @@
+package nlScript.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The productions of a <code>BNF</code>, indexed by dense indices of their left-hand sides.
+ *
+ * The non-terminals with productions are numbered from 0 in the order their first production was added
+ * to the grammar, when the table is built. The symbols on the right-hand sides are numbered along, so that
+ * the parser can follow the indices from one expansion to the next without looking up symbols in a map.
+ */
+final class ProductionTable {
+
+	/**
+	 * The index of terminals, and of non-terminals without productions.
+	 */
+	static final int NONE = -1;
+
+	private static final Production[] NO_PRODUCTIONS = new Production[0];
+
+	private final HashMap<NonTerminal, Integer> indices = new HashMap<>();
+
+	private final NonTerminal[] nonTerminals;
+
+	// the productions of each non-terminal, in reverse order, like BNF.getReversedProductionArray()
+	private final Production[][] reversedProductions;
+
+	// the indices of the right-hand side symbols of each production in reversedProductions
+	private final int[][][] reversedRightIndices;
+
+	ProductionTable(ArrayList<Production> productions) {
+		HashMap<NonTerminal, ArrayList<Production>> byLeft = new HashMap<>();
+		ArrayList<NonTerminal> lefts = new ArrayList<>();
+		for(Production p : productions) {
+			ArrayList<Production> list = byLeft.get(p.getLeft());
+			if(list == null) {
+				indices.put(p.getLeft(), lefts.size());
+				lefts.add(p.getLeft());
+				list = new ArrayList<>();
+				byLeft.put(p.getLeft(), list);
+			}
+			list.add(p);
+		}
+		int n = lefts.size();
+		nonTerminals = lefts.toArray(new NonTerminal[0]);
+		reversedProductions = new Production[n][];
+		reversedRightIndices = new int[n][][];
+		for(int index = 0; index < n; index++) {
+			ArrayList<Production> list = byLeft.get(nonTerminals[index]);
+			int nAlternatives = list.size();
+			Production[] reversed = new Production[nAlternatives];
+			int[][] rightIndices = new int[nAlternatives][];
+			for(int i = 0; i < nAlternatives; i++) {
+				Production p = list.get(nAlternatives - 1 - i);
+				reversed[i] = p;
+				Symbol[] rhs = p.getRight();
+				int[] ri = new int[rhs.length];
+				for(int j = 0; j < rhs.length; j++)
+					ri[j] = rhs[j].isNonTerminal() ? indexOf((NonTerminal) rhs[j]) : NONE;
+				rightIndices[i] = ri;
+			}
+			reversedProductions[index] = reversed;
+			reversedRightIndices[index] = rightIndices;
+		}
+	}
+
+	/**
+	 * @return the number of non-terminals with productions
+	 */
+	int size() {
+		return nonTerminals.length;
+	}
+
+	/**
+	 * @return the index of <code>left</code>, between 0 and <code>size()</code>, or <code>NONE</code> if it has
+	 * no productions.
+	 */
+	int indexOf(NonTerminal left) {
+		Integer index = indices.get(left);
+		return index != null ? index : NONE;
+	}
+
+	NonTerminal getNonTerminal(int index) {
+		return nonTerminals[index];
+	}
+
+	/**
+	 * @return the productions of the non-terminal with the given index, in reverse order. The returned array is
+	 * shared and must not be modified.
+	 */
+	Production[] getReversedProductions(int index) {
+		return index != NONE ? reversedProductions[index] : NO_PRODUCTIONS;
+	}
+
+	/**
+	 * @return for each production returned by <code>getReversedProductions()</code>, the indices of its
+	 * right-hand side symbols. The returned arrays are shared and must not be modified.
+	 */
+	int[][] getReversedRightIndices(int index) {
+		return index != NONE ? reversedRightIndices[index] : null;
+	}
+}
@@ -1,22 +1,49 @@
 package nlScript.core;
 
+import nlScript.ParseBudgetExceededException;
 import nlScript.ParseException;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.EmptyStackException;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
 
 public class RDParser {
 
+	public static final int DEFAULT_MEMO_CAPACITY = 1 << 16;
+
 	private final ParsedNodeFactory parsedNodeFactory;
 
 	private final BNF grammar;
 	private final Lexer lexer;
 
+	private ParserEngine engine = ParserEngine.DEPTH_FIRST;
+
+	private boolean pruning = true;
+
+	private boolean lightweightAutocompletion = false;
+
+	private ParseBudget budget = ParseBudget.UNLIMITED;
+	private long expansions = 0;
+	private long deadline = Long.MAX_VALUE;
+
+	private CancellationToken cancellationToken = null;
+
+	private ParseStats stats = null;
+
+	private boolean memoization = false;
+	private int memoCapacity = DEFAULT_MEMO_CAPACITY;
+	private long memoHits = 0;
+	private long memoMisses = 0;
+
 	public RDParser(BNF grammar, Lexer lexer, ParsedNodeFactory parsedNodeFactory) {
 		this.grammar = grammar;
 		this.lexer = lexer;
@@ -35,23 +62,175 @@ public class RDParser {
 		return parsedNodeFactory;
 	}
 
+	/**
+	 * Sets the strategy which searches the derivation of the input, <code>ParserEngine.DEPTH_FIRST</code>
+	 * by default. Pruning only applies to <code>ParserEngine.DEPTH_FIRST</code>.
+	 */
+	public void setEngine(ParserEngine engine) {
+		this.engine = engine;
+	}
+
+	public ParserEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Enables or disables skipping of alternatives whose FIRST set does not contain the next input character
+	 * (enabled by default). Non-terminals with many alternatives which start with a literal, like the
+	 * sentences of a <code>Parser</code>, skip all alternatives whose literal does not match the input (see
+	 * <code>LiteralTrie</code>). Skipped alternatives are only searched if the input fails, and their failure
+	 * could be the farthest one, so that errors are reported like without pruning. Pruning is not used while a
+	 * <code>ParseDebugger</code> is attached.
+	 */
+	public void setPruning(boolean pruning) {
+		this.pruning = pruning;
+	}
+
+	public boolean isPruning() {
+		return pruning;
+	}
+
+	/**
+	 * Enables building only the path from the last parsed terminal up to the root for each sequence which
+	 * reached the end of the input, instead of the entire parse tree, to find the autocompleting nodes.
+	 * The other children of the nodes on this path are placeholders which were not parsed. Ancestors which
+	 * several sequences have in common are only created once, with the children of the first sequence; the
+	 * paths of the other sequences are attached to them. Listeners are notified once, for the tree of the
+	 * result, before the autocompletions are collected.
+	 */
+	public void setLightweightAutocompletion(boolean lightweightAutocompletion) {
+		this.lightweightAutocompletion = lightweightAutocompletion;
+	}
+
+	public boolean isLightweightAutocompletion() {
+		return lightweightAutocompletion;
+	}
+
+	/**
+	 * Enables remembering the expansions of a <code>NonTerminal</code> at a lexer position which failed,
+	 * i.e. which neither completed the <code>NonTerminal</code> nor reached the end of the input, together with
+	 * the end of their farthest failure. Expanding the same <code>NonTerminal</code> at the same position again
+	 * is skipped if none of these failures could replace the best one found so far, so that the results, errors
+	 * and autocompletions are the same as without memoization. Memoization only applies to
+	 * <code>ParserEngine.DEPTH_FIRST</code> and is not used while a <code>ParseDebugger</code> is attached.
+	 */
+	public void setMemoization(boolean memoization) {
+		setMemoization(memoization, DEFAULT_MEMO_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximum number of failed expansions which are remembered; the least recently used one
+	 *                 is dropped when there are more.
+	 */
+	public void setMemoization(boolean memoization, int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Memo capacity must be positive: " + capacity);
+		this.memoization = memoization;
+		this.memoCapacity = capacity;
+	}
+
+	public boolean isMemoization() {
+		return memoization;
+	}
+
+	/**
+	 * @return the number of expansions during the last parse which were skipped because they failed before
+	 */
+	public long getMemoHits() {
+		return memoHits;
+	}
+
+	/**
+	 * @return the number of expansions during the last parse which were looked up in the memo, but had to be
+	 * searched
+	 */
+	public long getMemoMisses() {
+		return memoMisses;
+	}
+
+	/**
+	 * Limits the number of <code>NonTerminal</code> expansions, the size of the stack and the duration of each
+	 * parse, <code>ParseBudget.UNLIMITED</code> by default. A parse which exceeds it throws a
+	 * <code>ParseBudgetExceededException</code> with the best partial result found until then.
+	 */
+	public void setParseBudget(ParseBudget budget) {
+		this.budget = budget == null ? ParseBudget.UNLIMITED : budget;
+	}
+
+	public ParseBudget getParseBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the token which is checked periodically during parsing and while building parse trees, <code>null</code>
+	 * (by default) if the parse can't be cancelled. A cancelled parse throws a <code>CancellationException</code>.
+	 */
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+
+	/**
+	 * Sets the <code>ParseStats</code> which are filled by each parse, <code>null</code> (by default) to not
+	 * collect statistics.
+	 */
+	public void setParseStats(ParseStats stats) {
+		this.stats = stats;
+	}
+
+	public ParseStats getParseStats() {
+		return stats;
+	}
+
 	public DefaultParsedNode parse() throws ParseException {
 		return parse(null);
 	}
 
 	public DefaultParsedNode parse(ArrayList<Autocompletion> autocompletions) throws ParseException {
-		SymbolSequence seq = new SymbolSequence(BNF.ARTIFICIAL_START_SYMBOL);
 		ArrayList<SymbolSequence> endOfInput = new ArrayList<>();
-		if(parseDebugger != null)
-			parseDebugger.reset(seq, lexer.substring(0));
-		SymbolSequence parsedSequence = parseNotRecursive(seq, endOfInput);
-		if(autocompletions != null)
-			collectAutocompletions(endOfInput, autocompletions);
+		expansions = 0;
+		memoHits = 0;
+		memoMisses = 0;
+		deadline = budget.getMaxMillis() == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budget.getMaxMillis() * 1000000L;
+		if(stats != null)
+			stats.reset();
+		long t = System.nanoTime();
+		SymbolSequence parsedSequence;
+		try {
+			parsedSequence = engine.parse(this, endOfInput);
+		} catch(BudgetExceeded e) {
+			DefaultParsedNode[] last = new DefaultParsedNode[1];
+			DefaultParsedNode partial = e.best == null ? null : buildAst(createParsedTree(e.best, last));
+			throw new ParseBudgetExceededException(partial, last[0], this, e.getMessage());
+		}
+		if(stats != null)
+			stats.addSearchNanos(System.nanoTime() - t);
 		DefaultParsedNode[] last = new DefaultParsedNode[1];
-		DefaultParsedNode ret = createParsedTree(parsedSequence, last);
+		DefaultParsedNode ret;
+		if(lightweightAutocompletion) {
+			t = System.nanoTime();
+			ret = createParsedTree(parsedSequence, last);
+			if(stats != null)
+				stats.addTreeBuildingNanos(System.nanoTime() - t);
+			if(autocompletions != null)
+				collectAutocompletions(endOfInput, autocompletions);
+		} else {
+			if(autocompletions != null)
+				collectAutocompletions(endOfInput, autocompletions);
+			t = System.nanoTime();
+			ret = createParsedTree(parsedSequence, last);
+			if(stats != null)
+				stats.addTreeBuildingNanos(System.nanoTime() - t);
+		}
 		// System.out.println(GraphViz.toVizDotLink(ret));
 		// TODO first call buildAst (and remove it from Parser)
+		t = System.nanoTime();
 		ret = buildAst(ret);
+		if(stats != null)
+			stats.addTreeBuildingNanos(System.nanoTime() - t);
 		if(ret.getMatcher().state == ParsingState.FAILED) {
 			throw new ParseException(ret, last[0], this);
 		}
@@ -59,26 +238,87 @@ public class RDParser {
 		return ret;
 	}
 
-	private DefaultParsedNode buildAst(DefaultParsedNode pn) {
-		DefaultParsedNode[] children = new DefaultParsedNode[pn.numChildren()];
-		for(int i = 0; i < pn.numChildren(); i++) {
-			children[i] = buildAst(pn.getChild(i));
+	SymbolSequence parseDepthFirst(ArrayList<SymbolSequence> endOfInput) {
+		SymbolSequence seq = new SymbolSequence(BNF.ARTIFICIAL_START_SYMBOL);
+		if(parseDebugger != null)
+			parseDebugger.reset(seq, lexer.substring(0));
+		boolean usePruning = pruning && parseDebugger == null;
+		FailureMemo memo = memoization && parseDebugger == null ? new FailureMemo(memoCapacity) : null;
+		return parseNotRecursive(seq, endOfInput, usePruning, memo);
+	}
+
+	/**
+	 * Replaces the children of each node by the ones created by its production's <code>AstBuilder</code>,
+	 * bottom-up. Chains of <code>AstBuilder.REPETITION</code> productions are flattened at once, and an explicit
+	 * stack is used, so that long repetitions neither take quadratic time nor overflow the call stack.
+	 */
+	private DefaultParsedNode buildAst(DefaultParsedNode root) {
+		// nodes in pre-order, together with the children which are passed to their AstBuilders
+		ArrayList<DefaultParsedNode> nodes = new ArrayList<>();
+		ArrayList<DefaultParsedNode[]> nodeChildren = new ArrayList<>();
+		// for the first node of a repetition, the node which ends it
+		HashMap<DefaultParsedNode, DefaultParsedNode> repetitionEnds = new HashMap<>();
+
+		ArrayDeque<DefaultParsedNode> todo = new ArrayDeque<>();
+		todo.push(root);
+		while(!todo.isEmpty()) {
+			DefaultParsedNode pn = todo.pop();
+			DefaultParsedNode[] children;
+			if(isRepetition(pn)) {
+				ArrayList<DefaultParsedNode> entries = new ArrayList<>();
+				DefaultParsedNode tail = pn;
+				while(isRepetition(tail)) {
+					entries.add(tail.getChild(0));
+					tail = tail.getChild(tail.numChildren() - 1);
+				}
+				children = entries.toArray(new DefaultParsedNode[0]);
+				repetitionEnds.put(pn, tail);
+				todo.push(tail);
+			} else {
+				children = pn.getChildren();
+			}
+			for(int i = children.length - 1; i >= 0; i--)
+				todo.push(children[i]);
+			nodes.add(pn);
+			nodeChildren.add(children);
+		}
+
+		for(int i = nodes.size() - 1; i >= 0; i--) {
+			DefaultParsedNode pn = nodes.get(i);
+			DefaultParsedNode[] children = nodeChildren.get(i);
+			pn.removeAllChildren();
+			DefaultParsedNode repetitionEnd = repetitionEnds.get(pn);
+			if(repetitionEnd != null) {
+				pn.addChildren(children);
+				pn.addChildren(repetitionEnd.getChildren());
+			}
+			else if(pn.getProduction() != null)
+				pn.getProduction().builtAST(pn, children);
 		}
-		pn.removeAllChildren();
-		if(pn.getProduction() != null)
-			pn.getProduction().builtAST(pn, children);
+		return root;
+	}
 
-		return pn;
+	private static boolean isRepetition(DefaultParsedNode pn) {
+		return pn.getProduction() != null && pn.getProduction().isRepetition() && pn.numChildren() > 1;
 	}
 
 	private void collectAutocompletions(ArrayList<SymbolSequence> endOfInput, ArrayList<Autocompletion> autocompletions) {
 		assert autocompletions != null;
+		long t = System.nanoTime();
 		ArrayList<DefaultParsedNode> autocompletingParents = new ArrayList<>();
-		for(SymbolSequence seq : endOfInput)
-			collectAutocompletingParents(seq, autocompletingParents);
+		IdentityHashMap<SymbolSequence, PathNode> sharedPath = new IdentityHashMap<>();
+		for(SymbolSequence seq : endOfInput) {
+			checkCancelled();
+			DefaultParsedNode autocompletingParent = lightweightAutocompletion
+					? findAutocompletingParentOnPath(seq, sharedPath)
+					: findAutocompletingParent(seq);
+			if(autocompletingParent != null)
+				autocompletingParents.add(autocompletingParent);
+		}
 
 		HashSet<String> done = new HashSet<>();
 		for(DefaultParsedNode autocompletingParent : autocompletingParents) {
+			checkCancelled();
 			Production prod = autocompletingParent.getProduction();
 			String key = null;
 			if(prod != null) {
@@ -95,12 +335,17 @@ public class RDParser {
 					break;
 			}
 		}
+		if(stats != null)
+			stats.addAutocompletionNanos(System.nanoTime() - t);
 	}
 
-	private void collectAutocompletingParents(SymbolSequence symbolSequence, ArrayList<DefaultParsedNode> autocompletingParents) {
+	/**
+	 * @return the node closest to the root which provides autocompletion, on the path from the last parsed leaf
+	 * of the parse tree of <code>symbolSequence</code> to its root, or <code>null</code> if there is none
+	 */
+	private DefaultParsedNode findAutocompletingParent(SymbolSequence symbolSequence) {
 		DefaultParsedNode[] last = new DefaultParsedNode[1];
-		DefaultParsedNode treeRoot = createParsedTree(symbolSequence, last);
-//		System.out.println(GraphViz.toVizDotLink(treeRoot));
+		createParsedTree(symbolSequence, last);
 
 		// get a trace to the root
 		ArrayList<DefaultParsedNode> pathToRoot = new ArrayList<>();
@@ -111,16 +356,12 @@ public class RDParser {
 		}
 
 		// find the node closest to root which provides autocompletion
-		DefaultParsedNode autocompletingParent = null;
 		for(int i = pathToRoot.size() - 1; i >= 0; i--) {
 			DefaultParsedNode tmp = pathToRoot.get(i);
-			if (tmp.doesAutocomplete()) {
-				autocompletingParent = tmp;
-				break;
-			}
+			if (tmp.doesAutocomplete())
+				return tmp;
 		}
-		if(autocompletingParent != null)
-			autocompletingParents.add(autocompletingParent);
+		return null;
 	}
 
 	/**
@@ -176,9 +417,11 @@ public class RDParser {
 
 		while(next.isTerminal()) {
 //			System.out.println("next is a terminal node, lexer pos = " + lexer.getPosition());
-			Matcher matcher = ((Terminal) next).matches(lexer);
+			Matcher matcher = matchTerminal((Terminal) next);
 //			System.out.println("matcher = " + matcher);
 			symbolSequence.addMatcher(matcher);
+			if(stats != null && matcher.state == ParsingState.FAILED)
+				stats.alternativeFailed(symbolSequence.getNonTerminalOfCurrentSymbol());
 			if(parseDebugger != null)
 				parseDebugger.nextTerminal(symbolSequence, matcher, null);
 
@@ -189,7 +432,7 @@ public class RDParser {
 				return symbolSequence;
 
 			symbolSequence.incrementPosition();
-			lexer.fwd(matcher.parsed.length());
+			lexer.fwd(matcher.length());
 			if(lexer.isDone())
 				return symbolSequence;
 			next = symbolSequence.getCurrentSymbol();
@@ -199,8 +442,12 @@ public class RDParser {
 		SymbolSequence best = null;
 		int lexerPosOfBest = lexer.getPosition();
 		for(Production alternate : alternates) {
+			if(!symbolSequence.canReplaceCurrentSymbol(alternate))
+				continue;
 			int lexerPos = lexer.getPosition();
-			SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, -1);
+			SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, lexerPos);
+			if(stats != null)
+				stats.sequenceCreated();
 			if(parseDebugger != null)
 				parseDebugger.nextNonTerminal(symbolSequence, nextSequence, null);
 			SymbolSequence parsedSequence = parseRecursive(nextSequence, endOfInput);
@@ -222,29 +469,59 @@ public class RDParser {
 		return best;
 	}
 
-	private SymbolSequence parseNotRecursive(SymbolSequence start, ArrayList<SymbolSequence> endOfInput) {
-		Stack<SymbolSequence> stack = new Stack<>();
+	private SymbolSequence parseNotRecursive(SymbolSequence start, ArrayList<SymbolSequence> endOfInput, boolean usePruning, FailureMemo memo) {
+		ProductionTable table = grammar.getProductionTable();
+		FirstSets firstSets = usePruning ? grammar.getFirstSets() : null;
+
+		// holds SymbolSequences, the PrunedAlternatives in between them, where they would have been pushed, and
+		// the MemoFrames below the alternatives of the expansions they track
+		Stack<Object> stack = new Stack<>();
 		stack.push(start);
 
 		SymbolSequence best = null;
 		int lexerPosOfBest = lexer.getPosition();
 
 		a: while(!stack.isEmpty()) {
-
-
-			SymbolSequence symbolSequence = stack.pop();
+			Object item = stack.pop();
+			if(item instanceof PrunedAlternatives) {
+				// this is where exhaustive search would find the failures of the pruned alternatives; search them
+				// only if one of them could replace the best one so far
+				PrunedAlternatives pruned = (PrunedAlternatives) item;
+				if(best == null || pruned.couldReplace(best.getLastMatcher())) {
+					for(int i = 0; i < pruned.nAlternatives; i++) {
+						stack.push(pruned.context.replaceCurrentSymbol(pruned.alternatives[i], pruned.rightIndices[i], pruned.lexerPos));
+						if(stats != null)
+							stats.sequenceCreated();
+					}
+				}
+				else if(memo != null) {
+					memo.failed(pruned.failedEnd);
+				}
+				continue;
+			}
+			if(item instanceof MemoFrame) {
+				memo.exit((MemoFrame) item);
+				continue;
+			}
+			SymbolSequence symbolSequence = (SymbolSequence) item;
+			if(memo != null)
+				memo.reached(symbolSequence.remaining);
 			lexer.setPosition(symbolSequence.lexerPosAtStart);
+			if(lexer.isDone())
+				return symbolSequence;
 
 			Symbol next = symbolSequence.getCurrentSymbol();
 
 			while (next.isTerminal()) {
-				Matcher matcher = ((Terminal) next).matches(lexer);
+				Matcher matcher = matchTerminal((Terminal) next);
 				symbolSequence.addMatcher(matcher);
+				if(stats != null && matcher.state == ParsingState.FAILED)
+					stats.alternativeFailed(symbolSequence.getNonTerminalOfCurrentSymbol());
 				if(parseDebugger != null) {
 					SymbolSequence tip = symbolSequence;
 					try {
 						if (matcher.state != ParsingState.SUCCESSFUL) {
-							tip = stack.peek();
+							tip = (SymbolSequence) stack.peek();
 							System.out.println("FAILED");
 						}
 					} catch(EmptyStackException e) {
@@ -256,6 +533,11 @@ public class RDParser {
 				if (matcher.state == ParsingState.END_OF_INPUT && endOfInput != null)
 					endOfInput.add(symbolSequence);
 
+				if(memo != null && matcher.state == ParsingState.END_OF_INPUT)
+					memo.endOfInput();
+				else if(memo != null && matcher.state == ParsingState.FAILED)
+					memo.failed(matcher.end);
+
 				if (matcher.state != ParsingState.SUCCESSFUL) {
 					if (best == null || matcher.isBetterThan(best.getLastMatcher())) {
 						best = symbolSequence;
@@ -264,74 +546,342 @@ public class RDParser {
 					continue a;
 				}
 				symbolSequence.incrementPosition();
-				lexer.fwd(matcher.parsed.length());
+				if(memo != null)
+					memo.reached(symbolSequence.remaining);
+				lexer.fwd(matcher.length());
 				if (lexer.isDone())
 					return symbolSequence;
 				next = symbolSequence.getCurrentSymbol();
 			}
 
-			NonTerminal u = (NonTerminal) next;
-			ArrayList<Production> alternates = grammar.getProductions(u);
-			Collections.reverse(alternates);
+			checkLimits(memo != null ? stack.size() - memo.depth() : stack.size(), best);
+			int index = symbolSequence.getIndexOfCurrentSymbol();
+			if(index == Symbols.UNKNOWN)
+				index = table.indexOf((NonTerminal) next);
+
+			// the expansions of a non-terminal at a position do not depend on what follows it, unless they belong
+			// to a repetition whose bounds depend on the number of entries before
+			Symbols remaining = symbolSequence.remaining;
+			if(memo != null && index >= 0 && remaining.nEntries == 0 && remaining.next != null) {
+				long key = FailureMemo.key(index, lexer.getPosition());
+				Integer failedEnd = memo.get(key);
+				if(failedEnd != null && best != null && !couldReplace(failedEnd, best.getLastMatcher())) {
+					memoHits++;
+					memo.failed(failedEnd);
+					continue;
+				}
+				memoMisses++;
+				stack.push(memo.enter(key, remaining.next));
+			}
+			Production[] alternates = table.getReversedProductions(index);
+			int[][] rightIndices = table.getReversedRightIndices(index);
+
+			FirstSets.FirstSet[] firstOfAlternates = null;
+			char nextChar = 0;
+			boolean[] selected = null;
+			int trieFailedEnd = -1;
+			if(firstSets != null && !lexer.isAtEnd()) {
+				firstOfAlternates = firstSets.getReversedProductionFirstSets(index);
+				nextChar = lexer.peek();
+				LiteralTrie trie = firstSets.getLiteralTrie(index);
+				if(trie != null) {
+					selected = new boolean[alternates.length];
+					trieFailedEnd = trie.select(lexer, selected);
+				}
+			}
 
-			for (Production alternate : alternates) {
-				SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, lexer.getPosition());
+			// consecutive pruned alternatives, which are pushed together in place of their sequences
+			PrunedAlternatives pruned = null;
+			for (int i = 0; i < alternates.length; i++) {
+				Production alternate = alternates[i];
+				if(!symbolSequence.canReplaceCurrentSymbol(alternate))
+					continue;
+				int failedEnd = -1;
+				if(selected != null && !selected[i])
+					failedEnd = trieFailedEnd;
+				// the alternative would fail at its first terminal, which does not match the next character
+				else if(firstOfAlternates != null && !firstOfAlternates[i].canStartWith(nextChar))
+					failedEnd = lexer.getPosition() + 1;
+				if(failedEnd >= 0) {
+					if(pruned == null)
+						pruned = new PrunedAlternatives(symbolSequence, lexer.getPosition(), alternates.length - i);
+					pruned.add(alternate, rightIndices[i], failedEnd);
+					continue;
+				}
+				if(pruned != null) {
+					stack.push(pruned);
+					pruned = null;
+				}
+				SymbolSequence nextSequence = symbolSequence.replaceCurrentSymbol(alternate, rightIndices[i], lexer.getPosition());
+				if(stats != null)
+					stats.sequenceCreated();
 				stack.push(nextSequence);
 				if(parseDebugger != null) {
 					System.out.println("--- stack ---");
-					for(SymbolSequence tmp : stack)
+					for(Object tmp : stack)
 						System.out.println(tmp);
 					System.out.println("--------------");
 					parseDebugger.nextNonTerminal(symbolSequence, nextSequence, nextSequence);
 				}
 			}
+			if(pruned != null)
+				stack.push(pruned);
 		}
 
-
 		if(best != null) {
 			lexer.setPosition(lexerPosOfBest);
 		}
 		return best;
 	}
 
+	/**
+	 * Counts the expansion of a <code>NonTerminal</code>, and aborts the parse if it was cancelled, or with the
+	 * specified best sequence if it exceeds the <code>ParseBudget</code>. The deadline is only checked every 256
+	 * expansions.
+	 */
+	void checkLimits(int stackSize, SymbolSequence best) {
+		checkCancelled();
+		if(stats != null)
+			stats.stackDepth(stackSize);
+		expansions++;
+		if(expansions > budget.getMaxExpansions())
+			throw new BudgetExceeded("more than " + budget.getMaxExpansions() + " expansions", best);
+		if(stackSize > budget.getMaxStackSize())
+			throw new BudgetExceeded("more than " + budget.getMaxStackSize() + " alternatives on the stack", best);
+		if((expansions & 0xff) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+			throw new BudgetExceeded("more than " + budget.getMaxMillis() + " ms", best);
+	}
+
+	/**
+	 * Matches <code>terminal</code> at the current lexer position, counting the attempt in the <code>ParseStats</code>.
+	 */
+	Matcher matchTerminal(Terminal terminal) {
+		if(stats != null)
+			stats.terminalAttempted(terminal);
+		return terminal.matches(lexer);
+	}
+
+	private void checkCancelled() {
+		if(cancellationToken != null && cancellationToken.isCancelled())
+			throw new CancellationException("Parse cancelled");
+	}
+
+	/**
+	 * Checks whether a failure which ends at or before <code>failedEnd</code> could replace <code>best</code>.
+	 * A later failure replaces the best one if it ends at the same position, like in
+	 * <code>Matcher.isBetterThan()</code>.
+	 */
+	private static boolean couldReplace(int failedEnd, Matcher best) {
+		return best.state == ParsingState.FAILED && failedEnd >= best.end;
+	}
+
+	/**
+	 * The failed expansions of a parse, see <code>setMemoization()</code>: for a <code>NonTerminal</code>,
+	 * by its index in the <code>ProductionTable</code>, and a lexer position, the end of the farthest failure
+	 * of its expansion there, or -1 if nothing failed. Only the most recently used <code>capacity</code> entries
+	 * are kept.
+	 *
+	 * While an expansion is searched, a <code>MemoFrame</code> below its alternatives on the stack collects
+	 * its failures, and whether it was completed or reached the end of the input. The active frames are nested
+	 * like the expansions, so the innermost one collects the failures of the sequence which is searched, and
+	 * passes them on to the enclosing one when it is popped.
+	 */
+	private static final class FailureMemo extends LinkedHashMap<Long, Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		private final ArrayList<MemoFrame> active = new ArrayList<>();
+
+		// the innermost active frame for each sequence of symbols which follows the expanded non-terminal
+		private final IdentityHashMap<Symbols, MemoFrame> byFollowing = new IdentityHashMap<>();
+
+		FailureMemo(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		static long key(int index, int lexerPos) {
+			return ((long) index << 32) | lexerPos;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+			return size() > capacity;
+		}
+
+		int depth() {
+			return active.size();
+		}
+
+		MemoFrame enter(long key, Symbols following) {
+			MemoFrame frame = new MemoFrame(key, following, byFollowing.get(following));
+			byFollowing.put(following, frame);
+			active.add(frame);
+			return frame;
+		}
+
+		/**
+		 * Marks the expansions as completed which are followed by <code>remaining</code>, because a sequence
+		 * derived from them parsed everything before it.
+		 */
+		void reached(Symbols remaining) {
+			if(byFollowing.isEmpty())
+				return;
+			// the enclosing frames with the same following symbols were marked along with an inner one
+			for(MemoFrame f = byFollowing.get(remaining); f != null && !f.completed; f = f.sameFollowing)
+				f.completed = true;
+		}
+
+		void failed(int end) {
+			if(!active.isEmpty()) {
+				MemoFrame top = active.get(active.size() - 1);
+				top.failedEnd = Math.max(top.failedEnd, end);
+			}
+		}
+
+		void endOfInput() {
+			if(!active.isEmpty())
+				active.get(active.size() - 1).endOfInput = true;
+		}
+
+		/**
+		 * Called when all alternatives of the expansion of <code>frame</code>, the innermost active one, were
+		 * searched.
+		 */
+		void exit(MemoFrame frame) {
+			active.remove(active.size() - 1);
+			if(frame.sameFollowing != null)
+				byFollowing.put(frame.following, frame.sameFollowing);
+			else
+				byFollowing.remove(frame.following);
+			if(!frame.completed && !frame.endOfInput)
+				put(frame.key, frame.failedEnd);
+			if(frame.failedEnd >= 0)
+				failed(frame.failedEnd);
+			if(frame.endOfInput)
+				endOfInput();
+		}
+	}
+
+	private static final class MemoFrame {
+		private final long key;
+		private final Symbols following;
+		private final MemoFrame sameFollowing;
+		private boolean completed = false;
+		private boolean endOfInput = false;
+		private int failedEnd = -1;
+
+		MemoFrame(long key, Symbols following, MemoFrame sameFollowing) {
+			this.key = key;
+			this.following = following;
+			this.sameFollowing = sameFollowing;
+		}
+
+		public String toString() {
+			return "memo frame of " + (key >>> 32) + " at " + (int) key;
+		}
+	}
+
+	/**
+	 * Consecutive alternatives of an expansion which were skipped because they can't match the next character(s).
+	 * Each of them would fail at its first terminal, which ends at or before <code>failedEnd</code>. They are
+	 * popped from the stack where exhaustive search would have searched them, and only need to be searched then if
+	 * such a failure could replace the best one, so that errors are reported exactly as without pruning.
+	 */
+	private static final class PrunedAlternatives {
+		private final SymbolSequence context;
+		private final int lexerPos;
+		private int failedEnd = -1;
+		// in the order of the reversed production array, like they are pushed onto the stack
+		private final Production[] alternatives;
+		private final int[][] rightIndices;
+		private int nAlternatives = 0;
+
+		PrunedAlternatives(SymbolSequence context, int lexerPos, int capacity) {
+			this.context = context;
+			this.lexerPos = lexerPos;
+			this.alternatives = new Production[capacity];
+			this.rightIndices = new int[capacity][];
+		}
+
+		void add(Production alternative, int[] rightIndices, int failedEnd) {
+			this.rightIndices[nAlternatives] = rightIndices;
+			alternatives[nAlternatives++] = alternative;
+			this.failedEnd = Math.max(this.failedEnd, failedEnd);
+		}
+
+		boolean couldReplace(Matcher best) {
+			return RDParser.couldReplace(failedEnd, best);
+		}
+
+		public String toString() {
+			return "pruned alternatives of " + context;
+		}
+	}
+
+	/**
+	 * Unwinds the search when the <code>ParseBudget</code> is exceeded; <code>parse()</code> converts it into a
+	 * <code>ParseBudgetExceededException</code>.
+	 */
+	static final class BudgetExceeded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final transient SymbolSequence best;
+
+		BudgetExceeded(String reason, SymbolSequence best) {
+			super(reason, null, false, false);
+			this.best = best;
+		}
+	}
+
 	protected DefaultParsedNode createParsedTree(SymbolSequence leafSequence, DefaultParsedNode[] retLast) {
-		LinkedList<DefaultParsedNode> parsedNodeSequence = new LinkedList<>();
-		int nParsedMatchers = leafSequence.parsedMatchers.size();
-		int i = 0;
-		for(Symbol symbol : leafSequence.sequence) {
+		// The productions were applied at non-decreasing positions, so they are undone at non-increasing ones.
+		// The sequence of nodes is split at the current position, to reach it without traversing the sequence.
+		ArrayList<DefaultParsedNode> before = new ArrayList<>();
+		ArrayDeque<DefaultParsedNode> after = new ArrayDeque<>();
+		Symbol[] symbols = new Symbol[leafSequence.size()];
+		Matcher[] matchers = new Matcher[leafSequence.size()];
+		int nParsedMatchers = leafSequence.toArrays(symbols, matchers);
+		for(int i = 0; i < symbols.length; i++) {
 			Matcher matcher = i < nParsedMatchers
-					? leafSequence.parsedMatchers.get(i)
+					? matchers[i]
 					: new Matcher(ParsingState.NOT_PARSED, 0, ""); // TODO maybe this should not be 0
-			i++;
 
-			DefaultParsedNode pn = parsedNodeFactory.createNode(matcher, symbol, null);
-			parsedNodeSequence.add(pn);
+			DefaultParsedNode pn = parsedNodeFactory.createNode(matcher, symbols[i], null);
+			before.add(pn);
 		}
 
 		if(retLast != null)
-			retLast[0] = parsedNodeSequence.get(nParsedMatchers - 1);
-
-		SymbolSequence childSequence = leafSequence;
-		while(childSequence.parent != null) {
-			SymbolSequence parentSequence = childSequence.parent;
-			Production productionToCreateChildSequence = childSequence.production;
-			assert productionToCreateChildSequence != null;
-			int pos = parentSequence.pos;
+			retLast[0] = before.get(nParsedMatchers - 1);
+
+		ArrayList<Production> productions = new ArrayList<>();
+		ArrayList<Integer> positions = new ArrayList<>();
+		collectProductions(leafSequence, productions, positions);
+
+		for(int p = 0; p < productions.size(); p++) {
+			if((p & 0xff) == 0)
+				checkCancelled();
+			Production productionToCreateChildSequence = productions.get(p);
+			int pos = positions.get(p);
 			Symbol[] rhs = productionToCreateChildSequence.getRight();
 			Symbol   lhs = productionToCreateChildSequence.getLeft();
 			int rhsSize = rhs.length;
-			List<DefaultParsedNode> childList = parsedNodeSequence.subList(pos, pos + rhsSize);
-
-			Matcher matcher = matcherFromChildSequence(childList);
+			while(before.size() > pos)
+				after.push(before.remove(before.size() - 1));
+			while(before.size() < pos)
+				before.add(after.pop());
+			DefaultParsedNode[] childList = new DefaultParsedNode[rhsSize];
+			for(int i = 0; i < rhsSize; i++)
+				childList[i] = after.pop();
+
+			Matcher matcher = matcherFromChildSequence(Arrays.asList(childList));
 			DefaultParsedNode newParent = parsedNodeFactory.createNode(matcher, lhs, productionToCreateChildSequence);
-			newParent.addChildren(childList.toArray(new DefaultParsedNode[0]));
-			childList.clear();
-			parsedNodeSequence.add(pos, newParent);
-
-			childSequence = childSequence.parent;
+			newParent.addChildren(childList);
+			after.push(newParent);
 		}
 
-		DefaultParsedNode root = parsedNodeSequence.get(0);
+		DefaultParsedNode root = before.isEmpty() ? after.peek() : before.get(0);
 		assert root.getSymbol().equals(BNF.ARTIFICIAL_START_SYMBOL);
 
 		notifyExtensionListeners(root);
@@ -339,19 +889,137 @@ public class RDParser {
 		return root;
 	}
 
-	private static void notifyExtensionListeners(DefaultParsedNode pn) {
-		Production production = pn.getProduction();
-		if(production != null) {
-			production.wasExtended(pn, pn.getChildren());
-			for (DefaultParsedNode child : pn.getChildren())
-				notifyExtensionListeners(child);
+	/**
+	 * Like <code>findAutocompletingParent()</code>, but creates only the nodes from the last parsed leaf of
+	 * <code>leafSequence</code> up to the root, following the sequences which introduced the symbols on this
+	 * path. The path stops at the first ancestor which was already created for an earlier sequence in
+	 * <code>sharedPath</code>, for which the search was already done. The new nodes are attached to this
+	 * ancestor without becoming its children.
+	 *
+	 * <code>leafSequence</code> must end with the matcher of its current symbol, like the sequences which
+	 * reached the end of the input.
+	 */
+	private DefaultParsedNode findAutocompletingParentOnPath(SymbolSequence leafSequence, IdentityHashMap<SymbolSequence, PathNode> sharedPath) {
+		Matcher lastMatcher = leafSequence.current;
+		assert lastMatcher != null;
+		Symbols leafEntry = leafSequence.remaining;
+
+		// the entries of the symbols on the path, each one in the node created by its origin
+		ArrayList<Symbols> entries = new ArrayList<>();
+		PathNode sharedAncestor = null;
+		Symbols entry = leafEntry;
+		while(entry.origin != null) {
+			PathNode shared = sharedPath.get(entry.origin);
+			if(shared != null && shared.hasExtent(lastMatcher)) {
+				sharedAncestor = shared;
+				break;
+			}
+			entries.add(entry);
+			entry = entry.origin.parent.remaining;
+		}
+
+		DefaultParsedNode leaf = parsedNodeFactory.createNode(lastMatcher, leafEntry.symbol, null);
+		DefaultParsedNode child = leaf;
+		DefaultParsedNode[] path = new DefaultParsedNode[entries.size()];
+		for(int k = 0; k < path.length; k++) {
+			Symbols e = entries.get(k);
+			Production production = e.origin.production;
+			Symbol[] rhs = production.getRight();
+			Matcher matcher = new Matcher(lastMatcher.state, lexer.getInput(), e.origin.lexerPosAtStart, lastMatcher.end);
+			DefaultParsedNode parent = parsedNodeFactory.createNode(matcher, production.getLeft(), production);
+			DefaultParsedNode[] children = new DefaultParsedNode[rhs.length];
+			for(int i = 0; i < rhs.length; i++) {
+				children[i] = i == e.slot
+						? child
+						: parsedNodeFactory.createNode(new Matcher(ParsingState.NOT_PARSED, 0, ""), rhs[i], null);
+			}
+			parent.addChildren(children);
+			path[k] = parent;
+			child = parent;
+		}
+
+		if(sharedAncestor != null) {
+			DefaultParsedNode ancestor = sharedAncestor.node;
+			DefaultParsedNode[] children = ancestor.getChildren();
+			children[entry.slot] = child;
+			child.setParent(ancestor);
+			ancestor.getProduction().wasExtended(ancestor, children);
+		}
+		else {
+			assert child.getSymbol().equals(BNF.ARTIFICIAL_START_SYMBOL);
+		}
+
+		for(int k = path.length - 1; k >= 0; k--)
+			path[k].getProduction().wasExtended(path[k], path[k].getChildren());
+
+		// find the node closest to root which provides autocompletion
+		DefaultParsedNode autocompleting = sharedAncestor != null ? sharedAncestor.autocompleting : null;
+		for(int k = path.length - 1; k >= 0; k--) {
+			if(autocompleting == null && path[k].doesAutocomplete())
+				autocompleting = path[k];
+			sharedPath.put(entries.get(k).origin, new PathNode(path[k], autocompleting));
+		}
+		if(autocompleting == null && leaf.doesAutocomplete())
+			autocompleting = leaf;
+		return autocompleting;
+	}
+
+	/**
+	 * A node created by <code>findAutocompletingParentOnPath()</code>, together with the node closest to the root
+	 * at or above it which provides autocompletion, if any.
+	 */
+	private static final class PathNode {
+		private final DefaultParsedNode node;
+		private final DefaultParsedNode autocompleting;
+
+		PathNode(DefaultParsedNode node, DefaultParsedNode autocompleting) {
+			this.node = node;
+			this.autocompleting = autocompleting;
+		}
+
+		/**
+		 * The nodes on a path all end with the last matcher, so they can only be shared by paths whose last
+		 * matchers end at the same position, with the same state.
+		 */
+		boolean hasExtent(Matcher lastMatcher) {
+			Matcher m = node.getMatcher();
+			return m.end == lastMatcher.end && m.state == lastMatcher.state;
+		}
+	}
+
+	/**
+	 * Collects the productions which were applied to derive <code>leafSequence</code>, in reverse order,
+	 * together with the position of the replaced symbol.
+	 */
+	private static void collectProductions(SymbolSequence leafSequence, List<Production> productions, List<Integer> positions) {
+		for(SymbolSequence childSequence = leafSequence; childSequence.parent != null; childSequence = childSequence.parent) {
+			productions.add(childSequence.production);
+			positions.add(childSequence.parent.pos);
+		}
+	}
+
+	private static void notifyExtensionListeners(DefaultParsedNode root) {
+		// pre-order, using an explicit stack for deeply nested trees
+		ArrayDeque<DefaultParsedNode> todo = new ArrayDeque<>();
+		todo.push(root);
+		while(!todo.isEmpty()) {
+			DefaultParsedNode pn = todo.pop();
+			Production production = pn.getProduction();
+			if(production != null) {
+				DefaultParsedNode[] children = pn.getChildren();
+				production.wasExtended(pn, children);
+				for(int i = children.length - 1; i >= 0; i--)
+					todo.push(children[i]);
+			}
 		}
 	}
 
-	private static Matcher matcherFromChildSequence(List<DefaultParsedNode> children) {
+	private Matcher matcherFromChildSequence(List<DefaultParsedNode> children) {
 		int pos = -1;
+		int end = -1;
 		ParsingState state = ParsingState.NOT_PARSED;
-		StringBuilder parsed = new StringBuilder();
+		// whether all children refer to the input, so that the parent can refer to it too
+		boolean fromInput = true;
 		for(DefaultParsedNode child : children) {
 			// already encountered EOI or FAILED before, do nothing
 			if(state == ParsingState.END_OF_INPUT || state == ParsingState.FAILED)
@@ -362,35 +1030,67 @@ public class RDParser {
 			if (childState != ParsingState.NOT_PARSED) {
 				if(pos == -1)
 					pos = matcher.pos; // parent pos is the pos of the first child which is not NOT_PARSED
+				end = matcher.end;
 				if (state == ParsingState.NOT_PARSED || !childState.isBetterThan(state)) {
 					state = childState;
 				}
 			}
-			parsed.append(matcher.parsed);
+			if(matcher.input != lexer.getInput() && matcher.length() > 0)
+				fromInput = false;
 		}
 		if(pos == -1)
-			pos = 0;
+			pos = end = 0;
+		if(fromInput)
+			return new Matcher(state, lexer.getInput(), pos, end);
+
+		StringBuilder parsed = new StringBuilder();
+		for(DefaultParsedNode child : children) {
+			parsed.append(child.getMatcher().getParsed());
+			ParsingState childState = child.getMatcher().state;
+			if(childState == ParsingState.END_OF_INPUT || childState == ParsingState.FAILED)
+				break;
+		}
 		return new Matcher(state, pos, parsed.toString());
 	}
 
+	/**
+	 * A sentential form during parsing: the symbols which were already matched, together with their
+	 * <code>Matcher</code>s, followed by the symbols which still need to be parsed.
+	 *
+	 * Both parts are persistent linked lists, so that a sequence shares them with the sequence it was
+	 * derived from; replacing the current symbol only allocates the replacement.
+	 */
 	public static class SymbolSequence {
-		private final LinkedList<Symbol> sequence = new LinkedList<>();
+		private ParsedSymbols parsed;         // the matched symbols, the last one first
+		private Matcher current = null;       // the matcher of the current symbol, if it was matched already
+		private Symbols remaining;            // the symbols still to be parsed, starting with the current one
 		private int pos = 0;
+		private final int size;
 		private final SymbolSequence parent;
-		private final ArrayList<Matcher> parsedMatchers = new ArrayList<>();
 		private final Production production;
 		private final int lexerPosAtStart;
 
-		private SymbolSequence(SymbolSequence o, Production production, int lexerPosAtStart) {
-			this.sequence.addAll(o.sequence);
+		private SymbolSequence(SymbolSequence o, Production production, int[] rightIndices, int lexerPosAtStart) {
+			Symbol[] replacement = production.getRight();
+			Symbols r = o.remaining.next;
+			int last = replacement.length - 1;
+			for(int i = last; i >= 0; i--) {
+				int index = rightIndices != null ? rightIndices[i] : Symbols.UNKNOWN;
+				r = new Symbols(replacement[i], index, r, this, i, i == last && production.isRepetition() ? o.remaining.nEntries + 1 : 0);
+			}
+			this.parsed = o.parsed;
+			this.remaining = r;
 			this.pos = o.pos;
+			this.size = o.size - 1 + replacement.length;
 			this.parent = o;
 			this.production = production;
 			this.lexerPosAtStart = lexerPosAtStart;
 		}
 
 		public SymbolSequence(Symbol start) {
-			sequence.add(start);
+			parsed = null;
+			remaining = new Symbols(start, Symbols.UNKNOWN, null, null, 0, 0);
+			size = 1;
 			parent = null;
 			production = null;
 			lexerPosAtStart = 0;
@@ -400,18 +1100,31 @@ public class RDParser {
 			return production;
 		}
 
+		int getLexerPosAtStart() {
+			return lexerPosAtStart;
+		}
+
+		Symbols getRemaining() {
+			return remaining;
+		}
+
 		public SymbolSequence getParent() {
 			return parent;
 		}
 
 		public List<Matcher> getParsedMatchers() {
-			return parsedMatchers;
+			Matcher[] matchers = new Matcher[pos];
+			ParsedSymbols.toArrays(parsed, null, matchers);
+			List<Matcher> ret = new ArrayList<>(Arrays.asList(matchers));
+			if(current != null)
+				ret.add(current);
+			return ret;
 		}
 
 		public int getParsedUntil() {
-			int i = 0;
-			for(Matcher m : parsedMatchers)
-				i += m.parsed.length();
+			int i = ParsedSymbols.length(parsed);
+			if(current != null)
+				i += current.length();
 			return i;
 		}
 
@@ -420,50 +1133,177 @@ public class RDParser {
 		}
 
 		public Symbol getSymbol(int i) {
-			return sequence.get(i);
+			if(i < pos)
+				return ParsedSymbols.get(parsed, i).symbol;
+			Symbols r = remaining;
+			for(int j = pos; j < i; j++)
+				r = r.next;
+			return r.symbol;
 		}
 
 		public int size() {
-			return sequence.size();
+			return size;
 		}
 
 		public Matcher getLastMatcher() {
-			if(parsedMatchers.isEmpty())
-				return null;
-			return parsedMatchers.get(parsedMatchers.size() - 1);
+			if(current != null)
+				return current;
+			return parsed == null ? null : parsed.matcher;
 		}
 
 		public void addMatcher(Matcher matcher) {
-			this.parsedMatchers.add(matcher);
+			this.current = matcher;
 		}
 
 		public Symbol getCurrentSymbol() {
-			return sequence.get(pos);
+			return remaining.symbol;
+		}
+
+		/**
+		 * @return the <code>NonTerminal</code> whose production introduced the current symbol into this sequence,
+		 * or <code>null</code> if it is the start symbol
+		 */
+		NonTerminal getNonTerminalOfCurrentSymbol() {
+			return remaining.origin != null ? remaining.origin.production.getLeft() : null;
+		}
+
+		/**
+		 * @return the index of the current symbol in the <code>ProductionTable</code> of the grammar, or
+		 * <code>Symbols.UNKNOWN</code> if the sequence was created without the indices
+		 */
+		int getIndexOfCurrentSymbol() {
+			return remaining.index;
+		}
+
+		/**
+		 * Checks whether the current symbol can be replaced by <code>production</code>, according to the
+		 * bounds of the repetition it belongs to, if any.
+		 */
+		boolean canReplaceCurrentSymbol(Production production) {
+			return production.canBeApplied(remaining.nEntries);
 		}
 
 		public SymbolSequence replaceCurrentSymbol(Production production, int lexerPosAtStart) {
-			SymbolSequence copy = new SymbolSequence(this, production, lexerPosAtStart);
-			copy.parsedMatchers.addAll(this.parsedMatchers);
-			copy.sequence.remove(pos);
-			Symbol[] replacement = production.getRight();
-			for(int i = 0; i < replacement.length; i++)
-				copy.sequence.add(pos + i, replacement[i]);
-			return copy;
+			return new SymbolSequence(this, production, null, lexerPosAtStart);
+		}
+
+		/**
+		 * Like <code>replaceCurrentSymbol(Production, int)</code>, with the indices of the replacing symbols in
+		 * the <code>ProductionTable</code> of the grammar, see <code>ProductionTable.getReversedRightIndices()</code>.
+		 */
+		SymbolSequence replaceCurrentSymbol(Production production, int[] rightIndices, int lexerPosAtStart) {
+			return new SymbolSequence(this, production, rightIndices, lexerPosAtStart);
 		}
 
 		public void incrementPosition() {
+			parsed = new ParsedSymbols(remaining.symbol, current, parsed);
+			current = null;
+			remaining = remaining.next;
 			pos++;
 		}
 
+		/**
+		 * Copies the symbols of this sequence into <code>symbols</code> and their <code>Matcher</code>s into
+		 * <code>matchers</code>; both arrays need to have <code>size()</code> elements. Symbols which were not
+		 * (yet) parsed get a <code>null</code> matcher.
+		 *
+		 * @return the number of <code>Matcher</code>s
+		 */
+		private int toArrays(Symbol[] symbols, Matcher[] matchers) {
+			ParsedSymbols.toArrays(parsed, symbols, matchers);
+			int i = pos;
+			for(Symbols r = remaining; r != null; r = r.next)
+				symbols[i++] = r.symbol;
+			if(current == null)
+				return pos;
+			matchers[pos] = current;
+			return pos + 1;
+		}
+
 		public String toString() {
+			Symbol[] symbols = new Symbol[size];
+			toArrays(symbols, new Matcher[size]);
 			StringBuilder sb = new StringBuilder();
-			int i = 0;
-			for(Symbol sym : sequence) {
-				if(i++ == pos)
+			for(int i = 0; i < size; i++) {
+				if(i == pos)
 					sb.append(".");
-				sb.append(sym).append(" -- ");
+				sb.append(symbols[i]).append(" -- ");
 			}
 			return sb.toString();
 		}
 	}
+
+	/**
+	 * Persistent list of symbols.
+	 */
+	static final class Symbols {
+		// the index of a symbol which was not looked up in the ProductionTable
+		static final int UNKNOWN = -2;
+
+		final Symbol symbol;
+		// the index of the symbol in the ProductionTable of the grammar
+		final int index;
+		final Symbols next;
+		// the sequence whose production introduced the symbol, null for the start symbol
+		final SymbolSequence origin;
+		// the index of the symbol in the right-hand side of the production of origin
+		final int slot;
+		// for a symbol created by a repeating production, the number of entries of the repetition before it
+		final int nEntries;
+
+		Symbols(Symbol symbol, int index, Symbols next, SymbolSequence origin, int slot, int nEntries) {
+			this.symbol = symbol;
+			this.index = index;
+			this.next = next;
+			this.origin = origin;
+			this.slot = slot;
+			this.nEntries = nEntries;
+		}
+	}
+
+	/**
+	 * Persistent list of parsed symbols and their <code>Matcher</code>s, linked from the last one to the first one.
+	 */
+	private static final class ParsedSymbols {
+		private final Symbol symbol;
+		private final Matcher matcher;
+		private final ParsedSymbols previous;
+		private final int size;
+		private final int length; // the accumulated length of the parsed strings
+
+		ParsedSymbols(Symbol symbol, Matcher matcher, ParsedSymbols previous) {
+			this.symbol = symbol;
+			this.matcher = matcher;
+			this.previous = previous;
+			this.size = size(previous) + 1;
+			this.length = length(previous) + matcher.length();
+		}
+
+		static int size(ParsedSymbols p) {
+			return p == null ? 0 : p.size;
+		}
+
+		static int length(ParsedSymbols p) {
+			return p == null ? 0 : p.length;
+		}
+
+		static ParsedSymbols get(ParsedSymbols p, int i) {
+			while(i != p.size - 1)
+				p = p.previous;
+			return p;
+		}
+
+		/**
+		 * Fills the first <code>size(p)</code> entries of the given arrays, each of which may be null.
+		 */
+		static void toArrays(ParsedSymbols p, Symbol[] symbols, Matcher[] matchers) {
+			for(int i = size(p) - 1; i >= 0; i--) {
+				if(symbols != null)
+					symbols[i] = p.symbol;
+				if(matchers != null)
+					matchers[i] = p.matcher;
+				p = p.previous;
+			}
+		}
+	}
 }
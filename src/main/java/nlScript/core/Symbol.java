@@ -29,7 +29,9 @@ public abstract class Symbol implements RepresentsSymbol {
 
 	@Override
 	public boolean equals(Object o) {
-		if(o.getClass() != getClass())
+		if(o == this)
+			return true;
+		if(o == null || o.getClass() != getClass())
 			return false;
 		return symbol.equals(((Symbol) o).symbol);
 	}
@@ -4,8 +4,10 @@ import nlScript.ebnf.EBNFCore;
 import nlScript.util.RandomInt;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class Terminal extends Symbol {
 
@@ -20,8 +22,12 @@ public abstract class Terminal extends Symbol {
 		return new Literal(s);
 	}
 
+	/**
+	 * Returns the <code>Terminal</code> for the specified character class pattern, e.g. <code>[A-Za-z_]</code>.
+	 * Instances are shared between all grammars which use the same pattern.
+	 */
 	public static Terminal characterClass(String pattern) {
-		return new CharacterClass(pattern);
+		return CharacterClass.INTERNED.computeIfAbsent(pattern, CharacterClass::new);
 	}
 
 	public Terminal(String symbol) {
@@ -45,6 +51,15 @@ public abstract class Terminal extends Symbol {
 
 	public abstract Matcher matches(Lexer lexer);
 
+	/**
+	 * Checks whether this <code>Terminal</code> can match input which starts with the specified character.
+	 * Used to skip alternatives early (see <code>FirstSets</code>), it must therefore never return
+	 * <code>false</code> if <code>matches()</code> could succeed.
+	 */
+	public boolean canStartWith(char c) {
+		return true;
+	}
+
 	public abstract Object evaluate(Matcher matcher);
 
 	public abstract Generation generate();
@@ -69,7 +84,7 @@ public abstract class Terminal extends Symbol {
 
 		@Override
 		public Matcher matches(Lexer lexer) {
-			return new Matcher(ParsingState.SUCCESSFUL, lexer.getPosition(), "");
+			return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), lexer.getPosition(), lexer.getPosition());
 		}
 
 		@Override
@@ -91,8 +106,13 @@ public abstract class Terminal extends Symbol {
 		public Matcher matches(Lexer lexer) {
 			int pos = lexer.getPosition();
 			if(lexer.isAtEnd())
-				return new Matcher(ParsingState.SUCCESSFUL, pos, " ");
-			return new Matcher(ParsingState.FAILED, pos, "");
+				return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + 1);
+			return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos);
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return false;
 		}
 
 		@Override
@@ -115,16 +135,21 @@ public abstract class Terminal extends Symbol {
 		public Matcher matches(Lexer lexer) {
 			int pos = lexer.getPosition();
 			if(lexer.isAtEnd())
-				return new Matcher(ParsingState.END_OF_INPUT, pos, "");
+				return new Matcher(ParsingState.END_OF_INPUT, lexer.getInput(), pos, pos);
 			char c = lexer.peek();
 			if(Character.isDigit(c))
-				return new Matcher(ParsingState.SUCCESSFUL, pos, Character.toString(c));
-			return new Matcher(ParsingState.FAILED, pos, Character.toString(c));
+				return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + 1);
+			return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos + 1);
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return Character.isDigit(c);
 		}
 
 		@Override
 		public Object evaluate(Matcher matcher) {
-			return matcher.parsed.charAt(0);
+			return matcher.getParsed().charAt(0);
 		}
 
 		@Override
@@ -153,16 +178,21 @@ public abstract class Terminal extends Symbol {
 			String symbol = literal;
 			for(int i = 0; i < symbol.length(); i++) {
 				if(lexer.isAtEnd(i))
-					return new Matcher(ParsingState.END_OF_INPUT, pos, lexer.substring(pos, pos + i + 1));
+					return new Matcher(ParsingState.END_OF_INPUT, lexer.getInput(), pos, pos + i);
 				if(lexer.peek(i) != symbol.charAt(i))
-					return new Matcher(ParsingState.FAILED, pos, lexer.substring(pos, pos + i + 1));
+					return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos + i + 1);
 			}
-			return new Matcher(ParsingState.SUCCESSFUL, pos, symbol);
+			return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + symbol.length());
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return literal.isEmpty() || literal.charAt(0) == c;
 		}
 
 		@Override
 		public Object evaluate(Matcher matcher) {
-			return matcher.parsed;
+			return matcher.getParsed();
 		}
 
 		@Override
@@ -185,16 +215,21 @@ public abstract class Terminal extends Symbol {
 		public Matcher matches(Lexer lexer) {
 			int pos = lexer.getPosition();
 			if(lexer.isAtEnd())
-				return new Matcher(ParsingState.END_OF_INPUT, pos, "");
+				return new Matcher(ParsingState.END_OF_INPUT, lexer.getInput(), pos, pos);
 			char c = lexer.peek();
 			if(Character.isLetter(c))
-				return new Matcher(ParsingState.SUCCESSFUL, pos, Character.toString(c));
-			return new Matcher(ParsingState.FAILED, pos, Character.toString(c));
+				return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + 1);
+			return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos + 1);
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return Character.isLetter(c);
 		}
 
 		@Override
 		public Object evaluate(Matcher matcher) {
-			return matcher.parsed.charAt(0);
+			return matcher.getParsed().charAt(0);
 		}
 
 		@Override
@@ -220,16 +255,21 @@ public abstract class Terminal extends Symbol {
 		public Matcher matches(Lexer lexer) {
 			int pos = lexer.getPosition();
 			if(lexer.isAtEnd())
-				return new Matcher(ParsingState.END_OF_INPUT, pos, "");
+				return new Matcher(ParsingState.END_OF_INPUT, lexer.getInput(), pos, pos);
 			char c = lexer.peek();
 			if(c == ' ' || c == '\t')
-				return new Matcher(ParsingState.SUCCESSFUL, pos, Character.toString(c));
-			return new Matcher(ParsingState.FAILED, pos, Character.toString(c));
+				return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + 1);
+			return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos + 1);
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return c == ' ' || c == '\t';
 		}
 
 		@Override
 		public Object evaluate(Matcher matcher) {
-			return matcher.parsed.charAt(0);
+			return matcher.getParsed().charAt(0);
 		}
 
 		@Override
@@ -240,6 +280,8 @@ public abstract class Terminal extends Symbol {
 
 	public static class CharacterClass extends Terminal {
 
+		private static final ConcurrentHashMap<String, CharacterClass> INTERNED = new ConcurrentHashMap<>();
+
 		private final Ranges ranges;
 
 		private CharacterClass(String pattern) {
@@ -257,14 +299,14 @@ public abstract class Terminal extends Symbol {
 			if(negated)
 				start++;
 
-			ranges = new Ranges(negated);
+			ArrayList<CharacterRange> ranges = new ArrayList<>();
 
 			if(b.charAt(start) == '-') {
-				ranges.add(new SingleCharacterRange('-'));
+				ranges.add(new CharacterRange('-', '-'));
 				start++;
 			}
 			if(b.charAt(end) == '-') {
-				ranges.add(new SingleCharacterRange('-'));
+				ranges.add(new CharacterRange('-', '-'));
 				end--;
 			}
 
@@ -280,26 +322,32 @@ public abstract class Terminal extends Symbol {
 					idx = idx + 3;
 				}
 				else {
-					ranges.add(new SingleCharacterRange(c));
+					ranges.add(new CharacterRange(c, c));
 					idx++;
 				}
 			}
+			this.ranges = Ranges.of(negated, ranges);
 		}
 
 		@Override
 		public Matcher matches(Lexer lexer) {
 			int pos = lexer.getPosition();
 			if(lexer.isAtEnd())
-				return new Matcher(ParsingState.END_OF_INPUT, pos, "");
+				return new Matcher(ParsingState.END_OF_INPUT, lexer.getInput(), pos, pos);
 			char c = lexer.peek();
 			if(ranges.checkCharacter(c))
-				return new Matcher(ParsingState.SUCCESSFUL, pos, Character.toString(c));
-			return new Matcher(ParsingState.FAILED, pos, Character.toString(c));
+				return new Matcher(ParsingState.SUCCESSFUL, lexer.getInput(), pos, pos + 1);
+			return new Matcher(ParsingState.FAILED, lexer.getInput(), pos, pos + 1);
+		}
+
+		@Override
+		public boolean canStartWith(char c) {
+			return ranges.checkCharacter(c);
 		}
 
 		@Override
 		public Object evaluate(Matcher matcher) {
-			return matcher.parsed.charAt(0);
+			return matcher.getParsed().charAt(0);
 		}
 
 		@Override
@@ -316,71 +364,103 @@ public abstract class Terminal extends Symbol {
 	}
 
 	private static class CharacterRange {
-		int lower;
-		int upper;
+		final int lower;
+		final int upper;
 
 		public CharacterRange(int lower, int upper) {
 			this.lower = lower;
 			this.upper = upper;
 		}
-
-		public boolean checkCharacter(int i) {
-			return i >= lower && i <= upper;
-		}
-
-		public boolean equals(Object o) {
-			if(!o.getClass().equals(getClass()))
-				return false;
-			CharacterRange c = (CharacterRange) o;
-			return lower == c.lower && upper == c.upper;
-		}
 	}
 
-	private static class SingleCharacterRange extends CharacterRange {
-		int number;
-
-		public SingleCharacterRange(int number) {
-			super(number, number);
-			this.number = number;
-		}
+	/**
+	 * The compiled form of a character class: a bitmap of the matched ASCII characters, and the sorted,
+	 * merged ranges of the class, which are searched by bisection for all other characters. Equivalent
+	 * instances are interned by <code>Ranges.of()</code>.
+	 */
+	private static final class Ranges {
 
-		@Override
-		public boolean checkCharacter(int i) {
-			return i == number;
-		}
-	}
+		private static final ConcurrentHashMap<Ranges, Ranges> INTERNED = new ConcurrentHashMap<>();
 
-	private static class Ranges {
+		private final boolean negated;
 
-		private final ArrayList<CharacterRange> ranges = new ArrayList<>();
+		// the ASCII characters 0-63 and 64-127 which are matched, with negation already applied
+		private final long ascii0;
+		private final long ascii1;
 
-		private final boolean negated;
+		// the disjoint ranges of the class (before negation) in ascending order, with inclusive bounds
+		private final int[] lower;
+		private final int[] upper;
 
-		public Ranges(boolean negated) {
-			this.negated = negated;
+		static Ranges of(boolean negated, List<CharacterRange> ranges) {
+			Ranges r = new Ranges(negated, ranges);
+			Ranges existing = INTERNED.putIfAbsent(r, r);
+			return existing != null ? existing : r;
 		}
 
-		public void add(CharacterRange range) {
-			ranges.add(range);
-		}
+		private Ranges(boolean negated, List<CharacterRange> ranges) {
+			this.negated = negated;
 
-		public boolean checkCharacter(int i) {
-			for(CharacterRange range : ranges) {
-				boolean check = range.checkCharacter(i);
-				if(!negated && check)
-					return true;
-				if(negated && check)
-					return false;
+			ArrayList<CharacterRange> sorted = new ArrayList<>(ranges);
+			sorted.sort((r1, r2) -> Integer.compare(r1.lower, r2.lower));
+			int[] lower = new int[sorted.size()];
+			int[] upper = new int[sorted.size()];
+			int n = 0;
+			for(CharacterRange range : sorted) {
+				if(n > 0 && range.lower <= upper[n - 1] + 1) {
+					upper[n - 1] = Math.max(upper[n - 1], range.upper);
+				} else {
+					lower[n] = range.lower;
+					upper[n] = range.upper;
+					n++;
+				}
+			}
+			this.lower = Arrays.copyOf(lower, n);
+			this.upper = Arrays.copyOf(upper, n);
+
+			long a0 = 0, a1 = 0;
+			for(int i = 0; i < n && this.lower[i] < 128; i++) {
+				for(int c = this.lower[i]; c <= this.upper[i] && c < 128; c++) {
+					if(c < 64)
+						a0 |= 1L << c;
+					else
+						a1 |= 1L << (c - 64);
+				}
+			}
+			this.ascii0 = negated ? ~a0 : a0;
+			this.ascii1 = negated ? ~a1 : a1;
+		}
+
+		public boolean checkCharacter(int c) {
+			if(c < 64)
+				return (ascii0 >>> c & 1) != 0;
+			if(c < 128)
+				return (ascii1 >>> (c - 64) & 1) != 0;
+			int lo = 0;
+			int hi = lower.length - 1;
+			while(lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if(c < lower[mid])
+					hi = mid - 1;
+				else if(c > upper[mid])
+					lo = mid + 1;
+				else
+					return !negated;
 			}
 			return negated;
 		}
 
+		@Override
 		public boolean equals(Object o) {
-			if(!o.getClass().equals(this.getClass()))
+			if(!(o instanceof Ranges))
 				return false;
-			HashSet<CharacterRange> ts = new HashSet<>(ranges);
-			HashSet<CharacterRange> os = new HashSet<>(((Ranges)o).ranges);
-			return ts.equals(os);
+			Ranges r = (Ranges) o;
+			return negated == r.negated && Arrays.equals(lower, r.lower) && Arrays.equals(upper, r.upper);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Boolean.hashCode(negated) + Arrays.hashCode(lower)) + Arrays.hashCode(upper);
 		}
 
 		public Generation generate() {
@@ -395,21 +475,14 @@ public abstract class Terminal extends Symbol {
 			}
 
 			int N = 0;
-			for(CharacterRange range : ranges) {
-				int n = range.upper - range.lower + 1;
-				N += n;
-			}
+			for(int i = 0; i < lower.length; i++)
+				N += upper[i] - lower[i] + 1;
 
 			int r = RandomInt.next(0, N - 1);
-			for(CharacterRange range : ranges) {
-				int n = range.upper - range.lower + 1;
-				if(r < n) {
-					char ret = (char) (range.lower + r);
-					if(ret == '{' || ret == '[') {
-						System.out.println("Wrong character");
-					}
-					return new Generation(Character.toString(ret));
-				}
+			for(int i = 0; i < lower.length; i++) {
+				int n = upper[i] - lower[i] + 1;
+				if(r < n)
+					return new Generation(Character.toString((char) (lower[i] + r)));
 				r -= n;
 			}
 
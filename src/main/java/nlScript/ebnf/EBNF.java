@@ -18,6 +18,7 @@ import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.function.Supplier;
 
 public class EBNF extends EBNFCore {
 
@@ -37,38 +38,96 @@ public class EBNF extends EBNFCore {
 	public static final String DATETIME_NAME        = "date-time";
 	public static final String COLOR_NAME           = "color";
 
-	public final Rule SIGN;
-	public final Rule INTEGER;
-	public final Rule FLOAT;
-	public final Rule MONTH;
-	public final Rule WEEKDAY;
-	public final Rule WHITESPACE_STAR;
-	public final Rule WHITESPACE_PLUS;
-	public final Rule INTEGER_RANGE;
-	public final Rule PATH;
-	public final Rule TIME;
-	public final Rule DATE;
-	public final Rule DATETIME;
-	public final Rule COLOR;
+	private final HashMap<String, Rule> builtIns = new HashMap<>();
 
+	/**
+	 * Registers the built-in types. They are only instantiated once they are referenced (see
+	 * <code>EBNFCore.defineLazily()</code>), so that unused types don't enlarge the grammar.
+	 */
 	public EBNF() {
-		SIGN            = makeSign();
-		INTEGER         = makeInteger();
-		FLOAT           = makeFloat();
-		MONTH           = makeMonth();
-		WEEKDAY         = makeWeekday();
-		WHITESPACE_STAR = makeWhitespaceStar();
-		WHITESPACE_PLUS = makeWhitespacePlus();
-		INTEGER_RANGE   = makeIntegerRange();
-		PATH            = makePath();
-		TIME            = makeTime();
-		DATE            = makeDate();
-		DATETIME        = makeDatetime();
-		COLOR           = makeColor();
+		defineBuiltIn(SIGN_NAME,            this::makeSign);
+		defineBuiltIn(INTEGER_NAME,         this::makeInteger);
+		defineBuiltIn(FLOAT_NAME,           this::makeFloat);
+		defineBuiltIn(MONTH_NAME,           this::makeMonth);
+		defineBuiltIn(WEEKDAY_NAME,         this::makeWeekday);
+		defineBuiltIn(WHITESPACE_STAR_NAME, this::makeWhitespaceStar);
+		defineBuiltIn(WHITESPACE_PLUS_NAME, this::makeWhitespacePlus);
+		defineBuiltIn(INTEGER_RANGE_NAME,   this::makeIntegerRange);
+		defineBuiltIn(PATH_NAME,            this::makePath);
+		defineBuiltIn(TIME_NAME,            this::makeTime);
+		defineBuiltIn(DATE_NAME,            this::makeDate);
+		defineBuiltIn(DATETIME_NAME,        this::makeDatetime);
+		defineBuiltIn(COLOR_NAME,           this::makeColor);
 		symbols.put(Terminal.DIGIT.getSymbol(), Terminal.DIGIT);
 		symbols.put(Terminal.LETTER.getSymbol(), Terminal.LETTER);
 	}
 
+	private void defineBuiltIn(String type, Supplier<Rule> definition) {
+		defineLazily(type, () -> builtIns.put(type, definition.get()));
+	}
+
+	private Rule getBuiltIn(String type) {
+		getSymbol(type);
+		return builtIns.get(type);
+	}
+
+	/*
+	 * The getters below replace the former public fields SIGN, INTEGER, FLOAT, ..., COLOR, e.g. use
+	 * getInteger() instead of INTEGER. Each instantiates the respective built-in type on first use.
+	 */
+
+	public Rule getSign() {
+		return getBuiltIn(SIGN_NAME);
+	}
+
+	public Rule getInteger() {
+		return getBuiltIn(INTEGER_NAME);
+	}
+
+	public Rule getFloat() {
+		return getBuiltIn(FLOAT_NAME);
+	}
+
+	public Rule getMonth() {
+		return getBuiltIn(MONTH_NAME);
+	}
+
+	public Rule getWeekday() {
+		return getBuiltIn(WEEKDAY_NAME);
+	}
+
+	public Rule getWhitespaceStar() {
+		return getBuiltIn(WHITESPACE_STAR_NAME);
+	}
+
+	public Rule getWhitespacePlus() {
+		return getBuiltIn(WHITESPACE_PLUS_NAME);
+	}
+
+	public Rule getIntegerRange() {
+		return getBuiltIn(INTEGER_RANGE_NAME);
+	}
+
+	public Rule getPath() {
+		return getBuiltIn(PATH_NAME);
+	}
+
+	public Rule getTime() {
+		return getBuiltIn(TIME_NAME);
+	}
+
+	public Rule getDate() {
+		return getBuiltIn(DATE_NAME);
+	}
+
+	public Rule getDatetime() {
+		return getBuiltIn(DATETIME_NAME);
+	}
+
+	public Rule getColor() {
+		return getBuiltIn(COLOR_NAME);
+	}
+
 	public static void clearFilesystemCache() {
 		CompletePath.clearFilesystemCache();
 	}
@@ -80,7 +139,7 @@ public class EBNF extends EBNFCore {
 	private Rule makeInteger() {
 		// int -> (-|+)?digit+
 		Rule ret = sequence(INTEGER_NAME,
-				optional(null, SIGN.withName("sign")).withName("optional"),
+				optional(null, getSign().withName("sign")).withName("optional"),
 				plus(null, Terminal.DIGIT.withName()).withName("plus")
 		);
 		ret.setEvaluator(pn -> Integer.parseInt(pn.getParsedString()));
@@ -96,7 +155,7 @@ public class EBNF extends EBNFCore {
 	private Rule makeFloat() {
 		// float -> (-|+)?digit+(.digit*)?
 		Rule ret = sequence(FLOAT_NAME,
-				optional(null, SIGN.withName()).withName(),
+				optional(null, getSign().withName()).withName(),
 				plus(null, Terminal.DIGIT.withName()).withName(),
 				optional(null,
 						sequence(null,
@@ -164,11 +223,11 @@ public class EBNF extends EBNFCore {
 
 	private Rule makeIntegerRange() {
 		Rule delimiter = sequence(null,
-				WHITESPACE_STAR.withName("ws*"),
+				getWhitespaceStar().withName("ws*"),
 				Terminal.literal("-").withName(),
-				WHITESPACE_STAR.withName("ws*"));
+				getWhitespaceStar().withName("ws*"));
 		Rule ret = join(INTEGER_RANGE_NAME,
-				INTEGER.withName(),
+				getInteger().withName(),
 				null,
 				null,
 				delimiter.getTarget().withName("delimiter"),
@@ -197,7 +256,7 @@ public class EBNF extends EBNFCore {
 		Rule pink        = sequence(null, Terminal.literal("pink"        ).withName()).setEvaluator(pn -> rgb2int(255,   0, 128));
 		Rule gray        = sequence(null, Terminal.literal("gray"        ).withName()).setEvaluator(pn -> rgb2int(128, 128, 128));
 
-		Rule custom = tuple(null, INTEGER.withName(), "red", "green", "blue");
+		Rule custom = tuple(null, getInteger().withName(), "red", "green", "blue");
 		custom.setEvaluator(pn -> {
 			int r = (Integer) pn.evaluate("red");
 			int g = (Integer) pn.evaluate("green");
@@ -306,7 +365,7 @@ public class EBNF extends EBNFCore {
 		Rule ret = sequence(DATE_NAME,
 				day.withName("day"),
 				Terminal.literal(" ").withName(),
-				MONTH.withName("month"),
+				getMonth().withName("month"),
 				Terminal.literal(" ").withName(),
 				year.withName("year"));
 		ret.setEvaluator(pn -> LocalDate.parse(pn.getParsedString(), DateTimeFormatter.ofPattern("d MMMM yyyy")));
@@ -317,9 +376,9 @@ public class EBNF extends EBNFCore {
 
 	private Rule makeDatetime() {
 		Rule ret = sequence(DATETIME_NAME,
-				DATE.withName("date"),
+				getDate().withName("date"),
 				Terminal.literal(" ").withName(),
-				TIME.withName("time"));
+				getTime().withName("time"));
 		ret.setEvaluator(pn -> {
 			LocalDate date = (LocalDate) pn.evaluate("date");
 			LocalTime time = (LocalTime) pn.evaluate("time");
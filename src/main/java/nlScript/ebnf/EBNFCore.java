@@ -24,6 +24,8 @@ public class EBNFCore {
 
 	private final BNF bnf = new BNF();
 
+	private final HashMap<String, Runnable> lazyDefinitions = new HashMap<>();
+
 	public EBNFCore() {}
 
 	public EBNFCore(EBNFCore other) {
@@ -31,10 +33,33 @@ public class EBNFCore {
 		rules.addAll(other.rules);
 	}
 
+	/**
+	 * Returns the symbol for <code>type</code>, or null if there is none. Note that, if <code>type</code> was
+	 * registered with <code>defineLazily()</code> and not referenced yet, this adds its rules to the grammar,
+	 * which then needs to be compiled again, even if it was compiled before.
+	 */
 	public Symbol getSymbol(String type) {
+		instantiate(type);
 		return symbols.get(type);
 	}
 
+	/**
+	 * Registers <code>definition</code> to add the rules for <code>type</code> the first time the type is
+	 * referenced, i.e. looked up with <code>getSymbol()</code>, extended with further rules, or used in a rule.
+	 * Until then, the type does not add any productions to the grammar.
+	 */
+	protected void defineLazily(String type, Runnable definition) {
+		lazyDefinitions.put(type, definition);
+	}
+
+	private void instantiate(String type) {
+		if(lazyDefinitions.isEmpty())
+			return;
+		Runnable definition = lazyDefinitions.remove(type);
+		if(definition != null)
+			definition.run();
+	}
+
 	public void compile(Symbol topLevelSymbol) {
 		// update the start symbol
 		removeRules(BNF.ARTIFICIAL_START_SYMBOL);
@@ -57,42 +82,42 @@ public class EBNFCore {
 	}
 
 	public Rule plus(String type, Named<?> child) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "plus", child);
 		Plus plus = new Plus(tgt, child);
 		addRule(plus);
 		return plus;
 	}
 
 	public Rule star(String type, Named<?> child) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "star", child);
 		Star star = new Star(tgt, child);
 		addRule(star);
 		return star;
 	}
 
 	public Rule or(String type, Named<?>... options) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "or", options);
 		Or or = new Or(tgt, options);
 		addRule(or);
 		return or;
 	}
 
 	public Rule optional(String type, Named<?> child) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "optional", child);
 		Optional optional = new Optional(tgt, child);
 		addRule(optional);
 		return optional;
 	}
 
 	public Rule repeat(String type, Named<?> child, int from, int to) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "repeat", child);
 		Repeat repeat = new Repeat(tgt, child, from, to);
 		addRule(repeat);
 		return repeat;
 	}
 
 	public Rule repeat(String type, Named<?> child, String... names) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "repeat", child);
 		int n = names.length;
 		Repeat repeat = new Repeat(tgt, child, n, n);
 		repeat.setParsedChildNames(names);
@@ -105,7 +130,7 @@ public class EBNFCore {
 	}
 
 	public Rule join(String type, Named<?> child, Named<?> open, Named<?> close, Named<?> delimiter, boolean onlyKeepEntries, Range cardinality) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "join", Join.makeChildren(child, open, close, delimiter));
 		Join join = new Join(tgt, child, open, close, delimiter, cardinality);
 		join.setParsedChildNames(child.getName());
 		join.setOnlyKeepEntries(onlyKeepEntries);
@@ -118,7 +143,7 @@ public class EBNFCore {
 	}
 
 	public Rule join(String type, Named<?> child, Named<?> open, Named<?> close, Named<?> delimiter, boolean onlyKeepEntries, String... names) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "join", Join.makeChildren(child, open, close, delimiter));
 		int n = names.length;
 		Join join = new Join(tgt, child, open, close, delimiter, new Range(n, n));
 		join.setOnlyKeepEntries(onlyKeepEntries);
@@ -170,7 +195,7 @@ public class EBNFCore {
 	}
 
 	public Rule sequence(String type, Named<?>... children) {
-		NonTerminal tgt = newOrExistingNonTerminal(type);
+		NonTerminal tgt = newOrExistingNonTerminal(type, "sequence", children);
 		Sequence sequence = new Sequence(tgt, children);
 		addRule(sequence);
 		return sequence;
@@ -182,8 +207,10 @@ public class EBNFCore {
 
 		for(Named<?> n : rule.children) {
 			Symbol s = n.getSymbol();
-			if(!s.isEpsilon() && !symbols.containsKey(s.getSymbol()))
-				symbols.put(s.getSymbol(), s);
+			if(!s.isEpsilon() && !symbols.containsKey(s.getSymbol())) {
+				instantiate(s.getSymbol());
+				symbols.putIfAbsent(s.getSymbol(), s);
+			}
 		}
 		rules.add(rule);
 		rule.createBNF(bnf);
@@ -201,10 +228,15 @@ public class EBNFCore {
 		bnf.removeProductions(toRemove);
 	}
 
-	private NonTerminal newOrExistingNonTerminal(String type) {
+	/**
+	 * Returns the symbol for <code>type</code>, or a new one if there is none. If <code>type</code> is
+	 * <code>null</code>, returns a new symbol for an anonymous rule of kind <code>ruleType</code>, whose name
+	 * is unique in this grammar.
+	 */
+	private NonTerminal newOrExistingNonTerminal(String type, String ruleType, Named<?>... children) {
 		if(type == null)
-			return null;
-		Symbol s = symbols.get(type);
+			return Rule.anonymousTarget(ruleType, bnf, children);
+		Symbol s = getSymbol(type);
 		if(s == null)
 			s = new NonTerminal(type);
 		return (NonTerminal) s;
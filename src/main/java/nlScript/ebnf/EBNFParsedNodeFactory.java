@@ -1,5 +1,6 @@
 package nlScript.ebnf;
 
+import nlScript.ParseContext;
 import nlScript.ParsedNode;
 import nlScript.core.Matcher;
 import nlScript.core.ParsedNodeFactory;
@@ -10,12 +11,23 @@ import nlScript.core.DefaultParsedNode;
 public class EBNFParsedNodeFactory implements ParsedNodeFactory {
 
 
-	public static final EBNFParsedNodeFactory INSTANCE = new EBNFParsedNodeFactory();
+	public static final EBNFParsedNodeFactory INSTANCE = new EBNFParsedNodeFactory(null);
 
-	private EBNFParsedNodeFactory() {}
+	private final ParseContext context;
+
+	/**
+	 * Creates a factory for nodes which refer to <code>context</code>, see <code>ParsedNode.getContext()</code>.
+	 */
+	public EBNFParsedNodeFactory(ParseContext context) {
+		this.context = context;
+	}
+
+	public ParseContext getContext() {
+		return context;
+	}
 
 	@Override
 	public DefaultParsedNode createNode(Matcher matcher, Symbol symbol, Production production) {
-		return new ParsedNode(matcher, symbol, production);
+		return new ParsedNode(matcher, symbol, production, context);
 	}
 }
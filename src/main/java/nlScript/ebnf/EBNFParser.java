@@ -11,7 +11,11 @@ import java.util.ArrayList;
 public class EBNFParser extends RDParser {
 
 	public EBNFParser(BNF grammar, Lexer lexer) {
-		super(grammar, lexer, EBNFParsedNodeFactory.INSTANCE);
+		this(grammar, lexer, EBNFParsedNodeFactory.INSTANCE);
+	}
+
+	public EBNFParser(BNF grammar, Lexer lexer, EBNFParsedNodeFactory parsedNodeFactory) {
+		super(grammar, lexer, parsedNodeFactory);
 	}
 
 	@Override
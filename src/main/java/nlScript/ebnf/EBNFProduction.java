@@ -13,6 +13,23 @@ public class EBNFProduction extends Production {
 		this.rule = rule;
 	}
 
+	private EBNFProduction(EBNFProduction other, Rule rule) {
+		super(other);
+		this.rule = rule;
+	}
+
+	@Override
+	public EBNFProduction copy() {
+		return copy(rule);
+	}
+
+	/**
+	 * @return a copy of this production, which belongs to <code>rule</code> instead.
+	 */
+	public EBNFProduction copy(Rule rule) {
+		return new EBNFProduction(this, rule);
+	}
+
 	public Rule getRule() {
 		return rule;
 	}
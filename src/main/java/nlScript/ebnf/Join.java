@@ -16,7 +16,7 @@ public class Join extends Rule {
 	private Range cardinality;
 	private boolean onlyKeepEntries = true;
 
-	private static Named<?>[] makeChildren(Named<?> entry, Named<?> open, Named<?> close, Named<?> delimiter) {
+	static Named<?>[] makeChildren(Named<?> entry, Named<?> open, Named<?> close, Named<?> delimiter) {
 		int n = 1;
 		if(open      != null) n++;
 		if(close     != null) n++;
@@ -71,7 +71,7 @@ public class Join extends Rule {
 
 	public void createBNF(BNF g) {
 		final Symbol first = children[0].getSymbol();
-		final Named<NonTerminal> next = new NonTerminal("next-" + NonTerminal.makeRandomSymbol()).withName("next");
+		final Named<NonTerminal> next = new NonTerminal("next-" + g.makeUniqueSymbol()).withName("next");
 		final boolean hasOpen = open != null && !open.getSymbol().isEpsilon();
 		final boolean hasClose = close != null && !close.getSymbol().isEpsilon();
 		final boolean hasDelimiter = delimiter != null && !delimiter.getSymbol().isEpsilon();
@@ -116,11 +116,11 @@ public class Join extends Rule {
 				parent.addChildren(pn.getChildren());
 		});
 
-		NonTerminal repetition = new NonTerminal("repetition:" + NonTerminal.makeRandomSymbol());
+		NonTerminal repetition = new NonTerminal("repetition:" + g.makeUniqueSymbol());
 
 		// + : L -> first next*
 		if(cardinality.equals(Range.PLUS)) {
-			Star star = new Star(null, next);
+			Star star = new Star(anonymousTarget("star", g, next), next);
 			star.createBNF(g);
 			productions.addAll(star.productions);
 			Production p = addProduction(g, this, repetition, first, star.tgt);
@@ -137,7 +137,7 @@ public class Join extends Rule {
 		// * : L -> first next*
 		//     L -> epsilon
 		else if(cardinality.equals(Range.STAR)) {
-			Star star = new Star(null, next);
+			Star star = new Star(anonymousTarget("star", g, next), next);
 			star.createBNF(g);
 			productions.addAll(star.productions);
 
@@ -174,7 +174,7 @@ public class Join extends Rule {
 			}
 			else {
 				if(lower <= 0) {
-					Repeat repeat = new Repeat(null, next, 0, upper - 1);
+					Repeat repeat = new Repeat(anonymousTarget("repeat", g, next), next, 0, upper - 1);
 					repeat.createBNF(g);
 					productions.addAll(repeat.productions);
 					Production p = addProduction(g, this, repetition, first, repeat.tgt);
@@ -186,7 +186,7 @@ public class Join extends Rule {
 					addProduction(g, this, repetition, Terminal.EPSILON).setAstBuilder(((parent, children) -> {}));
 				}
 				else {
-					Repeat repeat = new Repeat(null, next, lower - 1, upper - 1);
+					Repeat repeat = new Repeat(anonymousTarget("repeat", g, next), next, lower - 1, upper - 1);
 					repeat.createBNF(g);
 					productions.addAll(repeat.productions);
 					Production p = addProduction(g, this, repetition, first, repeat.tgt);
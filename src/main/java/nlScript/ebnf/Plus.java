@@ -46,11 +46,8 @@ public class Plus extends Rule {
 			c0.setName(getParsedNameForChild(nthEntry));
 		});
 
-		p1.setAstBuilder((parent, children) -> {
-			// collect the ParsedNode from the first child and add all children of the 2nd child
-			parent.addChildren(children[0]);
-			parent.addChildren(children[1].getChildren());
-		});
+		// collect the ParsedNode from the first child and add all children of the 2nd child
+		p1.setAstBuilder(Production.AstBuilder.REPETITION);
 		//noinspection CodeBlock2Expr
 		p2.setAstBuilder((parent, children) -> {
 			parent.addChildren(children[0]);
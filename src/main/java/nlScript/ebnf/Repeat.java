@@ -9,7 +9,6 @@ import nlScript.core.GeneratorHints;
 import nlScript.core.Named;
 import nlScript.core.NonTerminal;
 import nlScript.core.Production;
-import nlScript.core.Symbol;
 import nlScript.util.RandomInt;
 
 public class Repeat extends Rule {
@@ -37,20 +36,26 @@ public class Repeat extends Rule {
 	}
 
 	public void createBNF(BNF g) {
-		for(int seqLen = to; seqLen >= from; seqLen--) {
-			Symbol[] rhs = new Symbol[seqLen];
-			for(int i = 0; i < seqLen; i++)
-				rhs[i] = children[0].getSymbol();
-			Production p = addProduction(g, this, tgt, rhs);
-			p.onExtension((parent, children) -> {
-				for(int c = 0; c < children.length; c++) {
-					ParsedNode ch = (ParsedNode) children[c];
-					ch.setNthEntryInParent(c);
-					ch.setName(getParsedNameForChild(c));
-				}
-			});
-			p.setAstBuilder(Production.AstBuilder.DEFAULT);
-		}
+		// tgt -> entry tgt, applied at most 'to' times, and tgt -> epsilon, after at least 'from' entries.
+		// Like with Star and Plus, each entry matches as much as it can before the next one is tried, e.g.
+		// {v:int:1-3} matches "12" as a single entry 12, not as the two entries 1 and 2. In the tree of an
+		// incomplete line, only the entries up to the end of the input are created.
+		Production p1 = addProduction(g, this, tgt, children[0].getSymbol(), tgt);
+		Production p2 = addProduction(g, this, tgt);
+		p1.setRepetitionBounds(from, to);
+		p2.setRepetitionBounds(from, to);
+
+		p1.onExtension((parent, children) -> {
+			int nthEntry = ((ParsedNode)parent).getNthEntryInParent();
+			ParsedNode c0 = (ParsedNode) children[0];
+			ParsedNode c1 = (ParsedNode) children[1];
+
+			c0.setNthEntryInParent(nthEntry);
+			c0.setName(getParsedNameForChild(nthEntry));
+			c1.setNthEntryInParent(nthEntry + 1);
+			c1.setName(parent.getName());
+		});
+		p1.setAstBuilder(Production.AstBuilder.REPETITION);
 	}
 
 	private final Generator DEFAULT_GENERATOR = (grammar, hints) -> {
@@ -23,18 +23,25 @@ public abstract class Rule implements RepresentsSymbol, Generatable {
 	public Rule(String type, NonTerminal tgt, Named<?>... children) {
 		this.type = type;
 
-		if(tgt != null)
-			this.tgt = tgt;
-		else {
-			String t = type;
-			if(children.length == 1)
-				t += "(" + children[0].getSymbol() + ")";
-			t += ":" + NonTerminal.makeRandomSymbol();
-			this.tgt = new NonTerminal(t);
-		}
+		this.tgt = tgt != null ? tgt : new NonTerminal(anonymousName(type, NonTerminal.makeUniqueSymbol(), children));
 		this.children = children;
 	}
 
+	/**
+	 * Creates the target for an anonymous rule of the given type in <code>bnf</code>, with a name which is unique
+	 * in the grammar.
+	 */
+	public static NonTerminal anonymousTarget(String type, BNF bnf, Named<?>... children) {
+		return new NonTerminal(anonymousName(type, bnf.makeUniqueSymbol(), children));
+	}
+
+	private static String anonymousName(String type, String uniqueSymbol, Named<?>... children) {
+		String t = type;
+		if(children.length == 1)
+			t += "(" + children[0].getSymbol() + ")";
+		return t + ":" + uniqueSymbol;
+	}
+
 	public NamedRule withName(String name) {
 		return new NamedRule(this, name);
 	}
@@ -126,6 +133,63 @@ public abstract class Rule implements RepresentsSymbol, Generatable {
 
 	public abstract void createBNF(BNF grammar);
 
+	/**
+	 * @return a copy of this rule, with the same target, children, evaluator, autocompleter and listener, which
+	 * does not change when this rule is changed, and cannot be changed itself. Used by compiled grammars.
+	 */
+	public Rule freeze() {
+		return new Frozen(this);
+	}
+
+	private static final class Frozen extends Rule {
+
+		private final Rule original;
+
+		private Frozen(Rule original) {
+			super(original.type, original.tgt, original.children.clone());
+			this.original = original;
+			this.parsedChildNames = original.parsedChildNames != null ? original.parsedChildNames.clone() : null;
+			super.setEvaluator(original.getEvaluator());
+			super.setAutocompleter(original.getAutocompleter());
+			super.onSuccessfulParsed(original.getOnSuccessfulParsed());
+		}
+
+		@Override
+		public Rule freeze() {
+			return this;
+		}
+
+		@Override
+		public Rule setEvaluator(Evaluator evaluator) {
+			throw new IllegalStateException("The rules of a compiled grammar cannot be changed");
+		}
+
+		@Override
+		public Rule setAutocompleter(Autocompleter autocompleter) {
+			throw new IllegalStateException("The rules of a compiled grammar cannot be changed");
+		}
+
+		@Override
+		public Rule onSuccessfulParsed(ParseListener listener) {
+			throw new IllegalStateException("The rules of a compiled grammar cannot be changed");
+		}
+
+		@Override
+		public void setParsedChildNames(String... parsedChildNames) {
+			throw new IllegalStateException("The rules of a compiled grammar cannot be changed");
+		}
+
+		@Override
+		public void createBNF(BNF grammar) {
+			throw new IllegalStateException("The rules of a compiled grammar cannot be changed");
+		}
+
+		@Override
+		public Generator getDefaultGenerator() {
+			return original.getDefaultGenerator();
+		}
+	}
+
 
 
 	private Generator generator;
@@ -38,11 +38,8 @@ public class Star extends Rule {
 			c1.setName(parent.getName());
 		});
 
-		p1.setAstBuilder((parent, children) -> {
-			// collect the ParsedNode from the first child and add all children of the 2nd child
-			parent.addChildren(children[0]);
-			parent.addChildren(children[1].getChildren());
-		});
+		// collect the ParsedNode from the first child and add all children of the 2nd child
+		p1.setAstBuilder(Production.AstBuilder.REPETITION);
 	}
 
 	private final Generator DEFAULT_GENERATOR = (grammar, hints) -> {
@@ -3,6 +3,7 @@ package nlScript.ui;
 import nlScript.ParseException;
 import nlScript.ParsedNode;
 import nlScript.Parser;
+import nlScript.core.CancellationToken;
 import nlScript.core.GraphViz;
 
 import javax.swing.*;
@@ -14,6 +15,7 @@ import java.awt.Font;
 import java.awt.event.ActionListener;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.CancellationException;
 
 public class ACEditor {
 
@@ -28,6 +30,8 @@ public class ACEditor {
 
 	private Thread runThread = null;
 
+	private CancellationToken runCancellation = null;
+
 	private ActionListener onRun = e -> run();
 
 	private Runnable beforeRun = () -> {};
@@ -136,19 +140,27 @@ public class ACEditor {
 		run(false);
 	}
 
+	/**
+	 * Runs the text in a new thread. The parse of a previous run which is still in progress is cancelled.
+	 */
 	public void run(boolean selectedLines) {
+		cancelRun();
+		CancellationToken cancellation = new CancellationToken();
+		runCancellation = cancellation;
 		outputArea.setText("");
 		runThread = new Thread(new Runnable() {
 			public void run() {
 				try {
 					beforeRun.run();
 					String textToEvaluate = selectedLines ? getSelectedLines() : getText();
-					ParsedNode pn = parser.parse(textToEvaluate, null);
+					ParsedNode pn = parser.parse(textToEvaluate, null, cancellation);
 					outputArea.setText(GraphViz.toVizDotLink(pn));
 					pn.evaluate();
 					afterRun.run();
 				} catch(ParseException e) {
 					outputArea.setText(e.getMessage() + "\n\n" + GraphViz.toVizDot(e.getRoot()));
+				} catch(CancellationException e) {
+					// superseded by a later run
 				} catch(Throwable e) {
 					StringWriter sw = new StringWriter();
 					PrintWriter pw = new PrintWriter(sw);
@@ -161,6 +173,14 @@ public class ACEditor {
 		runThread.start();
 	}
 
+	/**
+	 * Cancels the parse of the current run, if it is still in progress.
+	 */
+	public void cancelRun() {
+		if(runCancellation != null)
+			runCancellation.cancel();
+	}
+
 	public Thread getRunThread() {
 		return runThread;
 	}
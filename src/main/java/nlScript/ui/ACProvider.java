@@ -2,8 +2,10 @@ package nlScript.ui;
 
 
 import nlScript.ParseException;
+import nlScript.ParsedNode;
 import nlScript.Parser;
 import nlScript.core.Autocompletion;
+import nlScript.core.CancellationToken;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,13 +14,44 @@ public class ACProvider {
 
 	private final Parser parser;
 
+	private ParsedNode previousResult = null;
+
 	public ACProvider(Parser parser) {
 		this.parser = parser;
 	}
 
 	public List<Autocompletion> getAutocompletions(String text) throws ParseException {
+		return getAutocompletions(text, null);
+	}
+
+	/**
+	 * Collects the autocompletions at the end of <code>text</code>, throwing a
+	 * <code>java.util.concurrent.CancellationException</code> as soon as <code>cancellationToken</code> is cancelled.
+	 */
+	public List<Autocompletion> getAutocompletions(String text, CancellationToken cancellationToken) throws ParseException {
 		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
-		parser.parse(text, autocompletions);
+		ParsedNode previous = previousResult;
+		previousResult = null;
+		if(previous == null) {
+			previousResult = parser.parse(text, autocompletions, cancellationToken);
+			return autocompletions;
+		}
+		// only parse the lines that changed since the last call
+		String previousText = previous.getChild(0).getParsedString();
+		int start = 0;
+		int maxLength = Math.min(previousText.length(), text.length());
+		while(start < maxLength && previousText.charAt(start) == text.charAt(start))
+			start++;
+		int end = 0;
+		while(end < maxLength - start && previousText.charAt(previousText.length() - 1 - end) == text.charAt(text.length() - 1 - end))
+			end++;
+		previousResult = parser.reparse(
+				previous,
+				start,
+				previousText.length() - end - start,
+				text.substring(start, text.length() - end),
+				autocompletions,
+				cancellationToken);
 		return autocompletions;
 	}
 
@@ -1,6 +1,7 @@
 package nlScript.ui;
 
 import nlScript.core.BNF;
+import nlScript.core.CancellationToken;
 import nlScript.core.Matcher;
 import nlScript.core.NonTerminal;
 import nlScript.core.Symbol;
@@ -24,6 +25,9 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AutocompletionContext implements ParameterizedCompletionContext.ParameterChangeListener {
@@ -150,6 +154,7 @@ public class AutocompletionContext implements ParameterizedCompletionContext.Par
 
 			@Override
 			public void removeUpdate(DocumentEvent e) {
+				cancelRequest();
 				hidePopup();
 			}
 
@@ -162,6 +167,7 @@ public class AutocompletionContext implements ParameterizedCompletionContext.Par
 			// if the caret change is caused by an insert, we don't want to hide the popup window,
 			// but we'll still reset the flag.
 			if(!justInserted.get()) {
+				cancelRequest();
 				hidePopup();
 			}
 			else
@@ -196,6 +202,15 @@ public class AutocompletionContext implements ParameterizedCompletionContext.Par
 	private boolean insertedParameterizedAutocompletion = false;
 	final AtomicBoolean justInserted = new AtomicBoolean(false);
 
+	private CancellationToken currentRequest = null;
+
+	// processes autocompletion requests one after the other, so that they don't parse concurrently
+	private final ExecutorService requests = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "autocompletion");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	// private String lastInserted = null;
 	private int lastInsertionPosition = -1;
 
@@ -308,6 +323,12 @@ public class AutocompletionContext implements ParameterizedCompletionContext.Par
 		popup.setVisible(true);
 	}
 
+	/**
+	 * Collects the autocompletions at <code>caret</code> on a background thread, and shows (or inserts) them
+	 * on the event dispatch thread once they are available. A request which is still being processed when
+	 * the next one is made, or when text is removed or the caret is moved, is cancelled, and its results are
+	 * discarded.
+	 */
 	public void doAutocompletion(int caret, boolean autoInsertSingleOption) {
 		if(!enabled)
 			return;
@@ -319,18 +340,47 @@ public class AutocompletionContext implements ParameterizedCompletionContext.Par
 
 		errorHighlight.clearError();
 
-		List<Autocompletion> completions;
-		try {
-			completions = provider.getAutocompletions(text);
-		} catch (ParseException e) {
-			Matcher f = e.getFirstAutocompletingAncestorThatFailed().getMatcher();
-			errorHighlight.setError(f.pos, f.pos + f.parsed.length());
-			return;
-		} catch(Exception e) {
-			e.printStackTrace();
-			completions = new ArrayList<>();
+		// a request which is still being processed is superseded by this one
+		cancelRequest();
+		CancellationToken request = new CancellationToken();
+		currentRequest = request;
+
+		requests.execute(() -> {
+			List<Autocompletion> completions;
+			try {
+				completions = provider.getAutocompletions(text, request);
+			} catch (ParseException e) {
+				Matcher f = e.getFirstAutocompletingAncestorThatFailed().getMatcher();
+				SwingUtilities.invokeLater(() -> {
+					if(request == currentRequest)
+						errorHighlight.setError(f.pos, f.end);
+				});
+				return;
+			} catch(CancellationException e) {
+				return;
+			} catch(Exception e) {
+				e.printStackTrace();
+				completions = new ArrayList<>();
+			}
+			final List<Autocompletion> result = completions;
+			SwingUtilities.invokeLater(() -> {
+				if(request == currentRequest)
+					showAutocompletions(caret, entireText, autoInsertSingleOption, result);
+			});
+		});
+	}
+
+	/**
+	 * Cancels the autocompletion request which is currently being processed, if any.
+	 */
+	private void cancelRequest() {
+		if(currentRequest != null) {
+			currentRequest.cancel();
+			currentRequest = null;
 		}
+	}
 
+	private void showAutocompletions(int caret, String entireText, boolean autoInsertSingleOption, List<Autocompletion> completions) {
 		// we are in a parameterized completion context.
 		// we still want to autocomplete, but not beyond the end of the current parameter
 		BNF bnf = provider.getParser().getTargetGrammar().getBNF();
@@ -282,6 +282,75 @@ public class TestAutocompletion {
 		assertEquals("${row}/${column}, ${row}/${column}-${row}/${column},  ", autocompletions.stream().map(a -> a.getCompletion(Autocompletion.Purpose.FOR_INSERTION)).collect(Collectors.joining(", ")));
 	}
 
+	@Test
+	public void test11() throws ParseException {
+		Parser parser = new Parser();
+		for(int i = 0; i < 12; i++)
+			parser.defineType("well-column", String.format("%02d", i + 1), null);
+		for(int i = 0; i < 8; i++)
+			parser.defineType("well-row", Character.toString((char)('A' + i)), null);
+		parser.defineType("well", "{row:well-row}/{column:well-column}", null, true);
+		parser.defineType("well-range", "{start:well}-{stop:well}", null, true);
+		parser.defineType("well-or-range", "{well:well}", null, true);
+		parser.defineType("well-or-range", "{range:well-range}", null, true);
+		parser.defineType("wells", "{wells:list<well-or-range>:+}", null);
+		parser.defineSentence("Pipette from well {well:well}.", e -> null);
+		parser.defineSentence("Rinse {wells:wells} carefully.", e -> null);
+
+		String program = "Pipette from well A/01.\nRinse A/01-B/02, C/03 carefully.\nPipette from well B/12.\n";
+		for(int i = 0; i <= program.length(); i++) {
+			String input = program.substring(0, i);
+			ArrayList<Autocompletion> expected = new ArrayList<>();
+			parser.setLightweightAutocompletion(false);
+			ParsingState expectedState = parse(parser, input, expected);
+
+			ArrayList<Autocompletion> actual = new ArrayList<>();
+			parser.setLightweightAutocompletion(true);
+			ParsingState actualState = parse(parser, input, actual);
+
+			assertEquals(expectedState, actualState);
+			assertArrayEquals(getCompletionStrings(expected), getCompletionStrings(actual));
+		}
+	}
+
+	@Test
+	public void test12() {
+		// many sequences reach the end of the input with common ancestors, which are shared by their paths
+		Parser parser = new Parser();
+		parser.defineType("shape", "circle", null);
+		parser.defineType("shape", "square", null);
+		parser.defineType("color", "red", null);
+		parser.defineType("color", "green", null);
+		parser.defineSentence("Draw a circle at {p:tuple<int,x,y>}.", e -> null);
+		parser.defineSentence("Draw a circle at {p:tuple<int,x,y>} in {c:color}.", e -> null);
+		parser.defineSentence("Draw a square at {p:tuple<int,x,y>} with size {s:int}.", e -> null);
+		parser.defineSentence("Draw a line from {a:tuple<int,x,y>} to {b:tuple<int,x,y>}.", e -> null);
+		parser.defineSentence("Draw {n:int} {shapes:list<shape>} in {colors:list<color>}.", e -> null);
+
+		String program = "Draw a circle at (1, 2) in red.\nDraw 3 circle, square in red, green.\nDraw a line from (1, 2) to (3, 4).\n";
+		for(int i = 0; i <= program.length(); i++) {
+			String input = program.substring(0, i);
+			ArrayList<Autocompletion> expected = new ArrayList<>();
+			parser.setLightweightAutocompletion(false);
+			ParsingState expectedState = parse(parser, input, expected);
+
+			ArrayList<Autocompletion> actual = new ArrayList<>();
+			parser.setLightweightAutocompletion(true);
+			ParsingState actualState = parse(parser, input, actual);
+
+			assertEquals(expectedState, actualState);
+			assertArrayEquals(getCompletionStrings(expected), getCompletionStrings(actual));
+		}
+	}
+
+	private static ParsingState parse(Parser parser, String input, ArrayList<Autocompletion> autocompletions) {
+		try {
+			return parser.parse(input, autocompletions).getMatcher().state;
+		} catch(ParseException e) {
+			return ParsingState.FAILED;
+		}
+	}
+
 	private void test(String input, String... expectedCompletion) throws ParseException {
 		System.out.println("Testing " + input);
 		BNF grammar = makeGrammar();
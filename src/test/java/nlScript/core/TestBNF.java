@@ -0,0 +1,116 @@
+package nlScript.core;
+
+import nlScript.ebnf.EBNF;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBNF {
+
+	@Test
+	public void testProductionIndex() {
+		BNF bnf = new BNF();
+		NonTerminal a = new NonTerminal("A");
+		NonTerminal b = new NonTerminal("B");
+		Production a1 = bnf.addProduction(new Production(a, Terminal.literal("1")));
+		Production a2 = bnf.addProduction(new Production(a, Terminal.literal("2")));
+		Production b1 = bnf.addProduction(new Production(b, a));
+		Production a3 = bnf.addProduction(new Production(a, Terminal.literal("3")));
+		bnf.addProduction(new Production(a, Terminal.literal("2")));
+
+		assertArrayEquals(new Production[] {a1, a2, a3}, bnf.getProductionArray(a));
+		assertArrayEquals(new Production[] {a3, a2, a1}, bnf.getReversedProductionArray(a));
+		assertEquals(Arrays.asList(a1, a2, a3), bnf.getProductions(a));
+		assertArrayEquals(new Production[] {b1}, bnf.getProductionArray(b));
+
+		bnf.removeProductions(Collections.singleton(a2));
+		assertArrayEquals(new Production[] {a1, a3}, bnf.getProductionArray(a));
+		assertArrayEquals(new Production[] {a3, a1}, bnf.getReversedProductionArray(a));
+
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, b, BNF.ARTIFICIAL_STOP_SYMBOL));
+		BNF copy = new BNF(bnf);
+		bnf.removeStartProduction();
+		assertEquals(0, bnf.getProductionArray(BNF.ARTIFICIAL_START_SYMBOL).length);
+		assertEquals(1, copy.getProductionArray(BNF.ARTIFICIAL_START_SYMBOL).length);
+
+		bnf.reset();
+		assertEquals(0, bnf.getProductionArray(a).length);
+		assertEquals(0, bnf.getReversedProductionArray(b).length);
+		assertArrayEquals(new Production[] {a1, a3}, copy.getProductionArray(a));
+	}
+
+	@Test
+	public void testBulkInsert() {
+		BNF bnf = new BNF();
+		NonTerminal a = new NonTerminal("A");
+		NonTerminal b = new NonTerminal("B");
+		Production a1 = bnf.addProduction(new Production(a, Terminal.literal("1")));
+		bnf.beginBulkInsert();
+		Production a2 = bnf.addProduction(new Production(a, Terminal.literal("2")));
+		Production b1 = bnf.addProduction(new Production(b, a));
+		assertSame(a2, bnf.addProduction(new Production(a, Terminal.literal("2"))));
+		// read during the bulk insert
+		assertArrayEquals(new Production[] {a1, a2}, bnf.getProductionArray(a));
+		Production a3 = bnf.addProduction(new Production(a, Terminal.literal("3")));
+		bnf.endBulkInsert();
+
+		assertArrayEquals(new Production[] {a1, a2, a3}, bnf.getProductionArray(a));
+		assertArrayEquals(new Production[] {a3, a2, a1}, bnf.getReversedProductionArray(a));
+		assertArrayEquals(new Production[] {b1}, bnf.getProductionArray(b));
+
+		bnf.removeProductions(Collections.singleton(a2));
+		Production a2Again = bnf.addProduction(new Production(a, Terminal.literal("2")));
+		assertNotSame(a2, a2Again);
+		assertArrayEquals(new Production[] {a1, a3, a2Again}, bnf.getProductionArray(a));
+	}
+
+	@Test
+	public void testSymbolIds() {
+		NonTerminal a = new NonTerminal("A");
+		assertEquals(a, new NonTerminal("A"));
+		assertEquals(a.hashCode(), new NonTerminal("A").hashCode());
+		assertNotEquals(a, new NonTerminal("B"));
+		assertNotEquals(a, Terminal.literal("A"));
+		assertEquals(Terminal.literal("A"), Terminal.literal("A"));
+
+		// indices are dense within each grammar, in the order of the productions, independent of the symbols
+		// created elsewhere
+		BNF bnf = new BNF();
+		for(int i = 0; i < 1000; i++)
+			new NonTerminal(null);
+		NonTerminal b = new NonTerminal(null);
+		Production ab = bnf.addProduction(new Production(a, b, Terminal.literal("a")));
+		bnf.addProduction(new Production(b, Terminal.literal("b")));
+		ProductionTable table = bnf.getProductionTable();
+		assertEquals(2, table.size());
+		assertEquals(0, table.indexOf(a));
+		assertEquals(1, table.indexOf(new NonTerminal(b.getSymbol())));
+		assertEquals(ProductionTable.NONE, table.indexOf(new NonTerminal("B")));
+		assertArrayEquals(new Production[] {ab}, table.getReversedProductions(0));
+		assertArrayEquals(new int[] {1, ProductionTable.NONE}, table.getReversedRightIndices(0)[0]);
+		assertSame(table, bnf.getProductionTable());
+		bnf.addProduction(new Production(new NonTerminal("C"), a));
+		assertEquals(2, bnf.getProductionTable().indexOf(new NonTerminal("C")));
+
+		NonTerminal anonymous1 = new NonTerminal(null);
+		NonTerminal anonymous2 = new NonTerminal(null);
+		assertNotEquals(anonymous1, anonymous2);
+		assertTrue(anonymous1.getSymbol().startsWith("#"));
+		assertEquals(Long.parseLong(anonymous1.getSymbol().substring(1)) + 1, Long.parseLong(anonymous2.getSymbol().substring(1)));
+
+		// grammars name their anonymous symbols themselves, so the same definitions get the same names
+		assertEquals(anonymousSymbols(), anonymousSymbols());
+		BNF copy = new BNF(bnf);
+		assertEquals(bnf.makeUniqueSymbol(), copy.makeUniqueSymbol());
+		assertNotEquals(bnf.makeUniqueSymbol(), bnf.makeUniqueSymbol());
+	}
+
+	private static String anonymousSymbols() {
+		EBNF grammar = new EBNF();
+		grammar.list("list", grammar.star(null, Terminal.DIGIT.withName()).withName("digits"));
+		return grammar.getBNF().toString();
+	}
+}
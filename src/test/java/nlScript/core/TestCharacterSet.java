@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class TestCharacterSet {
 
@@ -34,4 +35,35 @@ public class TestCharacterSet {
 		assertEquals(ParsingState.SUCCESSFUL, root.getMatcher().state);
 		root.evaluate();
 	}
+
+	@Test
+	public void test02() {
+		String[] patterns = { "[a-zA-Z0-9]", "[^:{}]", "[-a-c]", "[a-c-]", "[^ \t\n{]", "[a-fd-k?]", "[\u03b1-\u03c90-9]", "[^\u03b1-\u03c9A\u20ac]" };
+		for(String pattern : patterns) {
+			Terminal cc = Terminal.characterClass(pattern);
+			for(char c = 0; c < 0x2100; c++)
+				assertEquals(matchesNaively(pattern, c), cc.canStartWith(c), pattern + " " + (int) c);
+		}
+	}
+
+	@Test
+	public void test03() {
+		assertSame(Terminal.characterClass("[a-z]"), Terminal.characterClass("[a-z]"));
+	}
+
+	private static boolean matchesNaively(String pattern, char c) {
+		boolean negated = pattern.charAt(1) == '^';
+		String content = pattern.substring(negated ? 2 : 1, pattern.length() - 1);
+		boolean found = false;
+		for(int i = 0; i < content.length(); i++) {
+			if(i + 2 < content.length() && content.charAt(i + 1) == '-') {
+				found |= c >= content.charAt(i) && c <= content.charAt(i + 2);
+				i += 2;
+			}
+			else {
+				found |= c == content.charAt(i);
+			}
+		}
+		return found != negated;
+	}
 }
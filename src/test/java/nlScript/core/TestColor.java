@@ -5,6 +5,7 @@ import nlScript.ParsedNode;
 import nlScript.Parser;
 import nlScript.core.Autocompletion;
 import nlScript.core.ParsingState;
+import nlScript.ebnf.EBNF;
 import org.junit.jupiter.api.Test;
 
 import java.awt.Color;
@@ -12,6 +13,8 @@ import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestColor {
 
@@ -52,4 +55,28 @@ public class TestColor {
 		assertEquals(ParsingState.SUCCESSFUL, root.getMatcher().state);
 		root.evaluate();
 	}
+
+	@Test
+	public void testLazyInstantiation() throws ParseException {
+		EBNF grammar = new EBNF();
+		BNF bnf = grammar.getBNF();
+		NonTerminal color = new NonTerminal(EBNF.COLOR_NAME);
+		NonTerminal integer = new NonTerminal(EBNF.INTEGER_NAME);
+		assertTrue(bnf.getProductions(color).isEmpty());
+		assertTrue(bnf.getProductions(integer).isEmpty());
+
+		assertEquals(color, grammar.getSymbol(EBNF.COLOR_NAME));
+		assertEquals(16, bnf.getProductions(color).size());
+		assertFalse(bnf.getProductions(integer).isEmpty());
+		assertTrue(bnf.getProductions(new NonTerminal(EBNF.DATE_NAME)).isEmpty());
+
+		// extending a built-in type keeps its built-in rules
+		Parser hlp = new Parser();
+		hlp.defineType("color", "transparent", pn -> 0);
+		hlp.defineSentence("My favorite color is {text-color:color}.", pn -> null);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		hlp.parse("My favorite color is ", autocompletions);
+		assertEquals(17, autocompletions.size());
+		assertEquals("transparent", autocompletions.get(16).getCompletion(Autocompletion.Purpose.FOR_INSERTION));
+	}
 }
@@ -0,0 +1,96 @@
+package nlScript.core;
+
+import nlScript.CompiledGrammar;
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import nlScript.ebnf.NamedRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompiledGrammar {
+
+	private static List<String> toStrings(List<Autocompletion> autocompletions) {
+		return autocompletions.stream()
+				.map(ac -> ac.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testConcurrentParsing() throws Exception {
+		Parser parser = new Parser();
+		parser.defineSentence("Set {name:[a-z]:+} to {value:int}.", pn -> null, true);
+		parser.defineSentence("Print {value:int}.", pn -> null, true);
+		CompiledGrammar grammar = parser.compile();
+
+		String[] texts = {
+				"Set a to 1.\nPrint 2.\n",
+				"Set a to 1.\nPri",
+				"Print 3.\nSet ",
+				"",
+		};
+		List<List<String>> expected = new ArrayList<>();
+		for(String text : texts) {
+			ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+			grammar.parse(text, autocompletions);
+			expected.add(toStrings(autocompletions));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			final int t = i % texts.length;
+			results.add(executor.submit(() -> {
+				ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+				grammar.parse(texts[t], autocompletions);
+				return toStrings(autocompletions).equals(expected.get(t));
+			}));
+		}
+		for(Future<Boolean> result : results)
+			assertTrue(result.get());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testSnapshot() throws ParseException {
+		Parser parser = new Parser();
+		parser.defineSentence("Print {value:int}.", pn -> null);
+		CompiledGrammar grammar = parser.compile();
+
+		parser.undefineType("sentence");
+		parser.defineSentence("Show {value:int}.", pn -> null);
+		assertThrows(ParseException.class, () -> parser.parse("Print 1.", null));
+		assertEquals(ParsingState.SUCCESSFUL, grammar.parse("Print 1.", null).getMatcher().state);
+		assertThrows(ParseException.class, () -> grammar.parse("Show 1.", null));
+	}
+
+	@Test
+	public void testRulesAreFrozen() throws ParseException {
+		Parser parser = new Parser();
+		NamedRule sentence = parser.defineSentence("Print {value:int}.", pn -> "before");
+		CompiledGrammar grammar = parser.compile();
+
+		// changes to the parser's rules after compiling don't affect the snapshot
+		ArrayList<String> parsed = new ArrayList<>();
+		sentence.get().setEvaluator(pn -> "after");
+		sentence.onSuccessfulParsed(pn -> parsed.add(pn.getParsedString()));
+
+		ParsedNode snapshotSentence = (ParsedNode) grammar.parse("Print 1.", null).getChild(0).getChild(0);
+		assertEquals("before", snapshotSentence.evaluate());
+		assertTrue(parsed.isEmpty());
+		assertNotSame(sentence.get(), snapshotSentence.getRule());
+		assertThrows(IllegalStateException.class, () -> snapshotSentence.getRule().setEvaluator(pn -> "changed"));
+
+		ParsedNode parserSentence = (ParsedNode) parser.parse("Print 1.", null).getChild(0).getChild(0);
+		assertEquals("after", parserSentence.evaluate());
+		assertEquals(1, parsed.size());
+	}
+}
@@ -0,0 +1,138 @@
+package nlScript.core;
+
+import nlScript.ParseException;
+import nlScript.Parser;
+import nlScript.ebnf.EBNFParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestEarley {
+
+	private static String parse(BNF grammar, String input, ParserEngine engine) {
+		EBNFParser rdParser = new EBNFParser(grammar, new Lexer(input));
+		rdParser.setEngine(engine);
+		// the number of trees built for autocompletion differs, depth-first search builds one per derivation
+		LinkedHashSet<String> parsed = new LinkedHashSet<>();
+		rdParser.addParseStartListener(() -> parsed.add("start"));
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		String result;
+		try {
+			result = toString(rdParser.parse(autocompletions));
+		} catch(ParseException e) {
+			result = e.getMessage();
+		}
+		return result + " " + parsed + " " + autocompletions.stream()
+				.map(a -> a.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.joining(", "));
+	}
+
+	private static String toString(DefaultParsedNode pn) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(pn.getSymbol()).append('[').append(pn.getMatcher().state).append(",'")
+				.append(pn.getParsedString()).append("']");
+		if(pn.numChildren() > 0)
+			sb.append('(').append(Arrays.stream(pn.getChildren()).map(TestEarley::toString).collect(Collectors.joining(" "))).append(')');
+		return sb.toString();
+	}
+
+	@Test
+	public void testSameResult() {
+		Parser parser = new Parser();
+		parser.defineType("color", "red", pn -> null);
+		parser.defineType("color", "green", pn -> null);
+		parser.defineType("color", "{r:int}, {g:int}, {b:int}", pn -> null);
+		parser.defineSentence("Paint it {c:color}.", pn -> null);
+		parser.defineSentence("Paint {n:int} walls {c:color}.", pn -> null);
+		parser.defineSentence("Paint {n:int} walls {c:color} {d:digit:+}.", pn -> null);
+		parser.defineSentence("Wait for {t:int} seconds.", pn -> null);
+		parser.compile();
+		BNF grammar = parser.getTargetGrammar().getBNF();
+
+		String program = "Paint it red.\nPaint 3 walls 1, 2, 3.\n\nPaint 3 walls green 12.\nWait for 5 seconds.\n";
+		// every prefix, to cover all end-of-input situations
+		for(int i = 0; i <= program.length(); i++) {
+			String input = program.substring(0, i);
+			assertEquals(parse(grammar, input, ParserEngine.DEPTH_FIRST), parse(grammar, input, ParserEngine.EARLEY), input);
+		}
+		String[] errors = {"Paint it blue.", "Paint it red.\nWait", "Wait for x seconds.", "Paint 3 walls 1, 2.", "x"};
+		for(String input : errors)
+			assertEquals(parse(grammar, input, ParserEngine.DEPTH_FIRST), parse(grammar, input, ParserEngine.EARLEY), input);
+	}
+
+	@Test
+	public void testAmbiguous() throws ParseException {
+		// P -> 'a' P 'b' | 'a' P 'c' | epsilon; depth-first search needs 2^n steps for a^n c^n
+		BNF bnf = new BNF();
+		NonTerminal p = new NonTerminal("P");
+		bnf.addProduction(new Production(p, Terminal.literal("a"), p, Terminal.literal("b")));
+		bnf.addProduction(new Production(p, Terminal.literal("a"), p, Terminal.literal("c")));
+		bnf.addProduction(new Production(p));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, p, BNF.ARTIFICIAL_STOP_SYMBOL));
+
+		int n = 40;
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < n; i++)
+			input.append('a');
+		for(int i = 0; i < n; i++)
+			input.append('c');
+		RDParser parser = new RDParser(bnf, new Lexer(input.toString()), ParsedNodeFactory.DEFAULT);
+		parser.setEngine(ParserEngine.EARLEY);
+		DefaultParsedNode pn = parser.parse();
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		assertEquals(input + " ", pn.getParsedString());
+	}
+
+	@Test
+	public void testAmbiguousPrefix() throws ParseException {
+		// P -> 'a' P 'b' | 'a' P 'c' | epsilon; for a^n, 2^n derivations reach the end of input
+		BNF bnf = new BNF();
+		NonTerminal p = new NonTerminal("P");
+		bnf.addProduction(new Production(p, Terminal.literal("a"), p, Terminal.literal("b")));
+		bnf.addProduction(new Production(p, Terminal.literal("a"), p, Terminal.literal("c")));
+		bnf.addProduction(new Production(p));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, p, BNF.ARTIFICIAL_STOP_SYMBOL));
+
+		StringBuilder input = new StringBuilder();
+		for(int n = 0; n <= 8; n++) {
+			assertEquals(parse(bnf, input.toString(), ParserEngine.DEPTH_FIRST), parse(bnf, input.toString(), ParserEngine.EARLEY), input.toString());
+			input.append('a');
+		}
+
+		int n = 100;
+		while(input.length() < n)
+			input.append('a');
+		EBNFParser rdParser = new EBNFParser(bnf, new Lexer(input.toString()));
+		rdParser.setEngine(ParserEngine.EARLEY);
+		ParseStats stats = new ParseStats();
+		rdParser.setParseStats(stats);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		assertEquals(ParsingState.END_OF_INPUT, rdParser.parse(autocompletions).getMatcher().state);
+		assertEquals("a, b, c", autocompletions.stream()
+				.map(a -> a.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.joining(", ")));
+		// the sequences towards each alternative at each position are only searched once
+		assertTrue(stats.getSequencesCreated() < 2 * n * n);
+	}
+
+	@Test
+	public void testLeftRecursion() throws ParseException {
+		// E -> E '+' 'x' | 'x' would not terminate with depth-first search
+		BNF bnf = new BNF();
+		NonTerminal e = new NonTerminal("E");
+		bnf.addProduction(new Production(e, e, Terminal.literal("+"), Terminal.literal("x")));
+		bnf.addProduction(new Production(e, Terminal.literal("x")));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, e, BNF.ARTIFICIAL_STOP_SYMBOL));
+
+		RDParser parser = new RDParser(bnf, new Lexer("x+x"), ParsedNodeFactory.DEFAULT);
+		parser.setEngine(ParserEngine.EARLEY);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		DefaultParsedNode pn = parser.parse(autocompletions);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+	}
+}
@@ -0,0 +1,144 @@
+package nlScript.core;
+
+import nlScript.ParseException;
+import nlScript.Parser;
+import nlScript.ebnf.EBNFParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFirstSets {
+
+	@Test
+	public void testFirstSets() {
+		BNF bnf = new BNF();
+		NonTerminal a = new NonTerminal("A");
+		NonTerminal b = new NonTerminal("B");
+		NonTerminal c = new NonTerminal("C");
+		bnf.addProduction(new Production(a, b, Terminal.literal("x")));
+		bnf.addProduction(new Production(b, Terminal.DIGIT));
+		bnf.addProduction(new Production(b));
+		bnf.addProduction(new Production(c, Terminal.characterClass("[a-c]"), a));
+		bnf.addProduction(new Production(c, Terminal.END_OF_INPUT));
+
+		FirstSets firstSets = bnf.getFirstSets();
+		FirstSets.FirstSet first = firstSets.get(a);
+		assertFalse(first.isNullable());
+		assertTrue(first.contains('x'));
+		assertTrue(first.contains('5'));
+		assertFalse(first.contains('y'));
+		assertTrue(first.contains('\u0660'));
+		assertFalse(first.contains('\u00e9'));
+		assertTrue(firstSets.get(b).isNullable());
+
+		first = firstSets.get(c);
+		assertTrue(first.contains('b'));
+		assertFalse(first.contains('d'));
+		assertFalse(first.contains('x'));
+
+		bnf.addProduction(new Production(b, Terminal.LETTER));
+		first = bnf.getFirstSets().get(a);
+		assertTrue(first.contains('y'));
+		assertTrue(first.contains('\u00e9'));
+	}
+
+	private static String parse(Parser parser, String input, boolean pruning) {
+		return parse(parser.getTargetGrammar().getBNF(), input, pruning);
+	}
+
+	private static String parse(BNF bnf, String input, boolean pruning) {
+		EBNFParser rdParser = new EBNFParser(bnf, new Lexer(input));
+		rdParser.setPruning(pruning);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		String result;
+		try {
+			result = toString(rdParser.parse(autocompletions));
+		} catch(ParseException e) {
+			result = e.getMessage() + " " + toString(e.getRoot());
+		}
+		return result + " " + autocompletions.stream()
+				.map(a -> a.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.joining(", "));
+	}
+
+	private static String toString(DefaultParsedNode pn) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(pn.getSymbol()).append('[').append(pn.getMatcher().state).append(",'")
+				.append(pn.getParsedString()).append("']");
+		if(pn.numChildren() > 0)
+			sb.append('(').append(Arrays.stream(pn.getChildren()).map(TestFirstSets::toString).collect(Collectors.joining(" "))).append(')');
+		return sb.toString();
+	}
+
+	@Test
+	public void testSameResult() {
+		Parser parser = new Parser();
+		parser.defineType("color", "red", pn -> null);
+		parser.defineType("color", "green", pn -> null);
+		parser.defineSentence("Paint it {c:color}.", pn -> null);
+		parser.defineSentence("Paint {n:int} walls {c:color}.", pn -> null);
+		parser.defineSentence("Wait for {t:int} seconds.", pn -> null);
+		parser.compile();
+
+		String[] inputs = {
+				"", "P", "Paint it red.", "Paint 3 walls green.\nWait for 5 seconds.",
+				"Paint it blue.", "Paint it red.\nWait", "Wait for x seconds.", "Paint it red.\n\n"
+		};
+		for(String input : inputs)
+			assertEquals(parse(parser, input, false), parse(parser, input, true), input);
+	}
+
+	private static long sequencesCreated(Parser parser, String input, boolean pruning) {
+		EBNFParser rdParser = new EBNFParser(parser.getTargetGrammar().getBNF(), new Lexer(input));
+		rdParser.setEngine(ParserEngine.DEPTH_FIRST);
+		rdParser.setPruning(pruning);
+		ParseStats stats = new ParseStats();
+		rdParser.setParseStats(stats);
+		assertThrows(ParseException.class, () -> rdParser.parse(null));
+		return stats.getSequencesCreated();
+	}
+
+	@Test
+	public void testFailureOfPrunedAlternatives() {
+		Parser parser = new Parser();
+		for(int i = 0; i < 30; i++)
+			parser.defineSentence("Step " + i + " takes {t:int} seconds.", pn -> null);
+		parser.defineSentence("Stop.", pn -> null);
+		parser.compile();
+
+		StringBuilder program = new StringBuilder();
+		for(int i = 0; i < 30; i++)
+			program.append("Step ").append(i).append(" takes 5 seconds.\n");
+
+		// the farthest failure is in a pruned alternative ("Stop."), or in a selected one
+		String[] inputs = {
+				program + "Sto.", program + "Step 3 takes 5 minutes.", program + "Stab.", program + "Step 3x",
+				program + "Xyz.", "Step 31 takes 5 seconds."
+		};
+		for(String input : inputs)
+			assertEquals(parse(parser, input, false), parse(parser, input, true), input);
+
+		// pruned alternatives are searched while parsing, instead of parsing everything again
+		String input = program + "Sto.";
+		assertTrue(sequencesCreated(parser, input, true) < sequencesCreated(parser, input, false));
+	}
+
+	@Test
+	public void testTiedFailures() {
+		// A -> 'a' is pruned at 'b', and fails at the same position as the 'z' after A -> epsilon; like in
+		// exhaustive search, the later failure is reported
+		BNF bnf = new BNF();
+		NonTerminal a = new NonTerminal("A");
+		bnf.addProduction(new Production(a, Terminal.literal("a")));
+		bnf.addProduction(new Production(a));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, a, Terminal.literal("z"), BNF.ARTIFICIAL_STOP_SYMBOL));
+
+		String unpruned = parse(bnf, "b", false);
+		assertTrue(unpruned.contains("'literal:z'[FAILED"), unpruned);
+		assertEquals(unpruned, parse(bnf, "b", true));
+	}
+}
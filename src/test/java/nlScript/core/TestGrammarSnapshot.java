@@ -0,0 +1,128 @@
+package nlScript.core;
+
+import nlScript.Evaluator;
+import nlScript.GrammarSnapshot;
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import nlScript.ebnf.NamedRule;
+import nlScript.ebnf.Rule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGrammarSnapshot {
+
+	private static final String PROGRAM =
+			"Draw a circle at (10, 20) in red.\n" +
+			"Blur with sigma 2.5 on channels 1, 2, 3.\n" +
+			"Name it abc.\n" +
+			"Repeat 3 times: xyxy.\n";
+
+	private static void define(Parser parser, HashMap<String, Evaluator> evaluators) {
+		evaluators.put("Draw a circle at {center:tuple<int,x,y>} in {c:color}.", pn -> "circle " + Arrays.toString((Object[]) pn.evaluate("center")) + " " + pn.evaluate("c"));
+		evaluators.put("Blur with sigma {sigma:float} on channels {channels:list<channel>}.", pn -> "blur " + pn.evaluate("sigma") + " " + Arrays.toString((Object[]) pn.evaluate("channels")));
+		evaluators.put("Name it {name:[a-z]:1-5}.", pn -> "name " + pn.getChild("name").getParsedString());
+		evaluators.put("Repeat {n:int} times: {pattern:xy-pair:+}.", pn -> "repeat " + pn.evaluate("n") + " " + pn.getChild("pattern").getParsedString());
+
+		parser.defineType("channel", "{c:digit}", pn -> pn.evaluate("c"));
+		parser.defineType("xy-pair", "xy", null);
+		parser.defineType("unused", "nothing", null);
+		parser.undefineType("unused");
+		for(String pattern : evaluators.keySet())
+			parser.defineSentence(pattern, evaluators.get(pattern), pattern.startsWith("Draw"));
+	}
+
+	private static String evaluate(Parser parser, String program) throws ParseException {
+		ParsedNode pn = parser.parse(program, null);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		return Arrays.deepToString((Object[]) pn.evaluate());
+	}
+
+	private static List<String> autocomplete(Parser parser, String text) throws ParseException {
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		parser.parse(text, autocompletions);
+		return autocompletions.stream()
+				.map(ac -> ac.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testWriteAndRead() throws ParseException, IOException {
+		Parser parser = new Parser();
+		parser.setRecording(true);
+		HashMap<String, Evaluator> evaluators = new HashMap<>();
+		define(parser, evaluators);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GrammarSnapshot.write(parser, out);
+
+		List<String> bound = new ArrayList<>();
+		Parser restored = new Parser();
+		restored.setRecording(true);
+		GrammarSnapshot.read(new ByteArrayInputStream(out.toByteArray()), restored, new GrammarSnapshot.Bindings() {
+			@Override
+			public Evaluator getEvaluator(String type, String pattern) {
+				if(type.equals("channel"))
+					return pn -> pn.evaluate("c");
+				return evaluators.get(pattern);
+			}
+
+			@Override
+			public void bind(String type, String pattern, NamedRule rule) {
+				bound.add(type);
+			}
+		});
+		assertEquals(7, bound.size());
+		// anonymous symbols are re-created with new names
+		for(Rule sentence : parser.getTargetGrammar().getRules(new NonTerminal("sentence"))) {
+			int idx = sentence.getChildIndexForName("channels");
+			if(idx >= 0)
+				assertNull(restored.getTargetGrammar().getSymbol(sentence.getChildren()[idx].getSymbol().getSymbol()));
+		}
+		assertTrue(restored.getTargetGrammar().getRules(new NonTerminal("unused")).isEmpty());
+
+		assertEquals(evaluate(parser, PROGRAM), evaluate(restored, PROGRAM));
+		assertEquals(autocomplete(parser, ""), autocomplete(restored, ""));
+		assertEquals(autocomplete(parser, "Draw a circle at "), autocomplete(restored, "Draw a circle at "));
+		assertEquals(autocomplete(parser, "Blur with sigma 2 on channels 1, "), autocomplete(restored, "Blur with sigma 2 on channels 1, "));
+		assertThrows(ParseException.class, () -> restored.parse("Name it abcdef.", null));
+
+		// a restored parser can be extended and written again
+		restored.defineSentence("Wait {t:int} seconds.", pn -> null);
+		ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+		GrammarSnapshot.write(restored, out2);
+		Parser restored2 = GrammarSnapshot.read(new ByteArrayInputStream(out2.toByteArray()), (type, pattern) -> null);
+		assertEquals(ParsingState.SUCCESSFUL, restored2.parse(PROGRAM + "Wait 5 seconds.", null).getMatcher().state);
+
+		assertThrows(IOException.class, () -> GrammarSnapshot.read(new ByteArrayInputStream(new byte[8]), (type, pattern) -> null));
+	}
+
+	@Test
+	public void testRecordingIsOptIn() throws IOException {
+		Parser parser = new Parser();
+		assertFalse(parser.isRecording());
+		define(parser, new HashMap<>());
+		assertThrows(IllegalStateException.class, () -> GrammarSnapshot.write(parser, new ByteArrayOutputStream()));
+		assertThrows(IllegalStateException.class, () -> parser.setRecording(true));
+
+		Parser recording = new Parser();
+		recording.setRecording(true);
+		define(recording, new HashMap<>());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GrammarSnapshot.write(recording, out);
+
+		// a parser restored with read(in, bindings) doesn't record
+		Parser restored = GrammarSnapshot.read(new ByteArrayInputStream(out.toByteArray()), (type, pattern) -> null);
+		assertFalse(restored.isRecording());
+	}
+}
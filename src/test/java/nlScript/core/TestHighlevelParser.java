@@ -1,5 +1,6 @@
 package nlScript.core;
 
+import nlScript.Evaluator;
 import nlScript.ParseException;
 import nlScript.ParsedNode;
 import nlScript.Parser;
@@ -8,6 +9,7 @@ import nlScript.ebnf.EBNF;
 import nlScript.ebnf.EBNFCore;
 import nlScript.ebnf.EBNFParsedNodeFactory;
 import nlScript.ebnf.Join;
+import nlScript.ebnf.NamedRule;
 import nlScript.ebnf.Plus;
 import nlScript.ebnf.Repeat;
 import nlScript.ebnf.Rule;
@@ -15,6 +17,12 @@ import nlScript.ebnf.Star;
 import nlScript.util.Range;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TestHighlevelParser {
@@ -365,4 +373,103 @@ public class TestHighlevelParser {
 		assertEquals(pn.getMatcher().state, ParsingState.SUCCESSFUL);
 		pn.evaluate();
 	}
+
+	@Test
+	public void testManySentences() throws ParseException {
+		Parser hlp = new Parser();
+		for(int i = 0; i < 1500; i++) {
+			final int fi = i;
+			hlp.defineSentence("Command number " + i + " sets {x:int} units.", pn -> {
+				assertEquals(fi % 7, (int) pn.evaluate("x"));
+				return null;
+			});
+		}
+		hlp.defineSentence("{n:int} times repeat.", pn -> null);
+
+		StringBuilder program = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			program.append("Command number ").append(i * 13 % 1500).append(" sets ").append(i * 13 % 1500 % 7).append(" units.\n");
+		program.append("3 times repeat.\n");
+		ParsedNode pn = hlp.parse(program.toString(), null);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		pn.evaluate();
+
+		// 14, 140-149 and 1400-1499
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		pn = hlp.parse(program + "Command number 14", autocompletions);
+		assertEquals(ParsingState.END_OF_INPUT, pn.getMatcher().state);
+		assertEquals(111, autocompletions.size());
+	}
+
+	@Test
+	public void testDefineSentences() throws ParseException {
+		Parser hlp = new Parser();
+		hlp.defineType("unit", "meters", pn -> 1);
+		LinkedHashMap<String, Evaluator> units = new LinkedHashMap<>();
+		units.put("millimeters", pn -> 1000);
+		units.put("kilometers", pn -> 1);
+		assertEquals(2, hlp.defineTypes("unit", units).size());
+
+		LinkedHashMap<String, Evaluator> sentences = new LinkedHashMap<>();
+		for(int i = 0; i < 2000; i++) {
+			final int fi = i;
+			sentences.put("Command number " + i + " moves {x:int} {u:unit}.", pn -> {
+				assertEquals(fi % 7, (int) pn.evaluate("x"));
+				return null;
+			});
+		}
+		List<NamedRule> rules = hlp.defineSentences(sentences);
+		assertEquals(2000, rules.size());
+
+		StringBuilder program = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			program.append("Command number ").append(i * 19 % 2000).append(" moves ").append(i * 19 % 2000 % 7).append(" millimeters.\n");
+		ParsedNode pn = hlp.parse(program.toString(), null);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		pn.evaluate();
+
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		hlp.parse("Command number 1999 moves 5 ", autocompletions);
+		assertEquals(Arrays.asList("meters", "millimeters", "kilometers"), autocompletions.stream()
+				.map(ac -> ac.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testSharedPatternGrammar() throws ParseException, InterruptedException {
+		Parser p1 = new Parser();
+		Parser p2 = new Parser();
+		assertSame(p1.EXPRESSION, p2.EXPRESSION);
+
+		p1.defineType("shade", "red", pn -> "red");
+		p2.defineType("shade", "blue", pn -> "blue");
+		p1.defineSentence("Paint {c:list<shade>}.", pn -> null);
+		p2.defineSentence("Paint {c:shade:2}.", pn -> null);
+		assertEquals(ParsingState.SUCCESSFUL, p1.parse("Paint red, red.", null).getMatcher().state);
+		assertEquals(ParsingState.SUCCESSFUL, p2.parse("Paint blueblue.", null).getMatcher().state);
+		assertThrows(ParseException.class, () -> p1.parse("Paint blue.", null));
+		assertThrows(ParseException.class, () -> p2.parse("Paint red, red.", null));
+
+		// a private grammar for patterns does not affect other parsers
+		assertNotSame(p1.getGrammar(), p2.getGrammar());
+		assertNotSame(p1.getGrammar(), new Parser().getGrammar());
+		p1.defineSentence("Fill {c:shade}.", pn -> null);
+		assertEquals(ParsingState.SUCCESSFUL, p1.parse("Fill red.", null).getMatcher().state);
+
+		// patterns can be defined concurrently
+		Parser[] parsers = new Parser[4];
+		Thread[] threads = new Thread[parsers.length];
+		for(int t = 0; t < threads.length; t++) {
+			Parser parser = parsers[t] = new Parser();
+			threads[t] = new Thread(() -> {
+				for(int i = 0; i < 200; i++)
+					parser.defineSentence("Step " + i + " takes {n:int} {unit:[a-z]:1-5}.", pn -> null);
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+		for(Parser parser : parsers)
+			assertEquals(ParsingState.SUCCESSFUL, parser.parse("Step 199 takes 3 ms.", null).getMatcher().state);
+	}
 }
@@ -162,6 +162,29 @@ public class TestJoin {
 		}
 	}
 
+	@Test
+	public void testLongList() throws ParseException {
+		int n = 20000;
+		StringBuilder input = new StringBuilder("(");
+		Character[] result = new Character[n];
+		for(int i = 0; i < n; i++) {
+			result[i] = (char) ('0' + i % 10);
+			if(i > 0)
+				input.append(',');
+			input.append(result[i]);
+		}
+		input.append(')');
+
+		RDParser parser = new RDParser(makeGrammar(true, true, Range.STAR), new Lexer(input.toString()), EBNFParsedNodeFactory.INSTANCE);
+		DefaultParsedNode root = parser.parse();
+		assertEquals(SUCCESSFUL, root.getMatcher().state);
+
+		DefaultParsedNode parsed = root.getChild(0);
+		assertEquals(n, parsed.numChildren());
+		assertEquals(Terminal.DIGIT.getSymbol(), parsed.getChild(n - 1).getName());
+		assertArrayEquals(result, (Object[]) parsed.evaluate());
+	}
+
 	private static BNF makeGrammar(boolean withOpenAndClose, boolean withDelimiter, Range range) {
 		EBNF grammar = new EBNF();
 		Rule rule = grammar.join("join",
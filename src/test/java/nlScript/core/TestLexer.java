@@ -0,0 +1,54 @@
+package nlScript.core;
+
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLexer {
+
+	@Test
+	public void testSubSequence() {
+		Lexer lexer = new Lexer(new StringBuilder("hello world"));
+		assertEquals(11, lexer.length());
+		assertEquals("world", lexer.subSequence(6).toString());
+		assertEquals("lo", lexer.subSequence(3, 5).toString());
+		assertEquals("world", lexer.substring(6, 100));
+		lexer.setPosition(6);
+		assertEquals('w', lexer.peek());
+		assertEquals("hello  -- world", lexer.toString());
+	}
+
+	@Test
+	public void testMappedFile() throws IOException, ParseException {
+		Parser parser = new Parser();
+		parser.defineSentence("Print {value:int}.", pn -> null);
+		String text = "Print 1.\nPrint 23.\n";
+
+		Path file = Files.createTempFile("nlScript", ".txt");
+		try {
+			Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				CharBuffer input = StandardCharsets.UTF_8.decode(mapped);
+				ParsedNode pn = parser.parse(input, null);
+				assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+				assertEquals(2, pn.getChild(0).numChildren());
+				assertEquals("Print 23.", pn.getChild(0).getChild(1).getParsedString());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
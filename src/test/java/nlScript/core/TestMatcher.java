@@ -0,0 +1,55 @@
+package nlScript.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMatcher {
+
+	@Test
+	public void testOffsets() {
+		String input = "abc def";
+		Matcher m = new Matcher(ParsingState.SUCCESSFUL, input, 4, 7);
+		assertEquals(3, m.length());
+		assertEquals("def", m.getParsed());
+		assertSame(m.getParsed(), m.getParsed());
+
+		// the end of input is matched as a space
+		Matcher eoi = new Matcher(ParsingState.SUCCESSFUL, input, 7, 8);
+		assertEquals(" ", eoi.getParsed());
+		assertEquals("abc def ", new Matcher(ParsingState.SUCCESSFUL, input, 0, 8).getParsed());
+
+		assertTrue(m.isBetterThan(new Matcher(ParsingState.SUCCESSFUL, 4, "de")));
+		assertFalse(m.isBetterThan(eoi));
+	}
+
+	@Test
+	public void testParsedTree() throws Exception {
+		BNF bnf = new BNF();
+		NonTerminal s = new NonTerminal("s");
+		bnf.addProduction(new Production(s, Terminal.literal("ab"), Terminal.DIGIT, Terminal.literal("cd")));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, s, BNF.ARTIFICIAL_STOP_SYMBOL));
+		RDParser parser = new RDParser(bnf, new Lexer("ab1cd"), ParsedNodeFactory.DEFAULT);
+		DefaultParsedNode root = parser.parse();
+		assertEquals("ab1cd ", root.getParsedString());
+		DefaultParsedNode pn = root.getChild(0);
+		assertEquals(0, pn.getMatcher().pos);
+		assertEquals(5, pn.getMatcher().end);
+		assertEquals("1", pn.getChild(1).getParsedString());
+	}
+
+	@Test
+	public void testMutableInput() throws Exception {
+		BNF bnf = new BNF();
+		NonTerminal s = new NonTerminal("s");
+		bnf.addProduction(new Production(s, Terminal.literal("ab"), Terminal.DIGIT));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, s, BNF.ARTIFICIAL_STOP_SYMBOL));
+		StringBuilder input = new StringBuilder("ab1");
+		RDParser parser = new RDParser(bnf, new Lexer(input), ParsedNodeFactory.DEFAULT);
+		DefaultParsedNode root = parser.parse();
+		// the parsed strings are created from a copy of the input
+		input.setCharAt(2, '2');
+		assertEquals("1", root.getChild(0).getChild(1).getParsedString());
+		assertEquals("ab1 ", root.getParsedString());
+	}
+}
@@ -0,0 +1,144 @@
+package nlScript.core;
+
+import nlScript.CompiledGrammar;
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMemoization {
+
+	private static BNF makeGrammar() {
+		// alternatives share the prefix ITEM, which is re-parsed for each of them without memoization
+		BNF bnf = new BNF();
+		NonTerminal list = new NonTerminal("LIST");
+		NonTerminal item = new NonTerminal("ITEM");
+		NonTerminal digits = new NonTerminal("DIGITS");
+		bnf.addProduction(new Production(list, item, Terminal.literal(";"), list));
+		bnf.addProduction(new Production(list, item, Terminal.literal(","), list));
+		bnf.addProduction(new Production(list, item));
+		bnf.addProduction(new Production(item, Terminal.literal("("), digits, Terminal.literal(")")));
+		bnf.addProduction(new Production(item, digits));
+		bnf.addProduction(new Production(digits, Terminal.DIGIT, digits));
+		bnf.addProduction(new Production(digits, Terminal.DIGIT));
+		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL, list, BNF.ARTIFICIAL_STOP_SYMBOL));
+		return bnf;
+	}
+
+	private static String parse(String input, boolean memoize, boolean prune, ArrayList<Autocompletion> autocompletions) {
+		RDParser parser = new RDParser(makeGrammar(), new Lexer(input), ParsedNodeFactory.DEFAULT);
+		parser.setMemoization(memoize);
+		parser.setPruning(prune);
+		try {
+			return toString(parser.parse(autocompletions));
+		} catch(ParseException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static String toString(DefaultParsedNode pn) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(pn.getSymbol()).append('[').append(pn.getMatcher().state).append(',')
+				.append(pn.getMatcher().pos).append(",'").append(pn.getParsedString()).append("']");
+		if(pn.numChildren() > 0)
+			sb.append('(').append(java.util.Arrays.stream(pn.getChildren()).map(TestMemoization::toString).collect(Collectors.joining(" "))).append(')');
+		return sb.toString();
+	}
+
+	private static String toString(ArrayList<Autocompletion> autocompletions) {
+		return autocompletions.stream()
+				.map(a -> a.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.joining(", "));
+	}
+
+	private static void assertSameResult(String input) {
+		for(boolean prune : new boolean[] { true, false }) {
+			ArrayList<Autocompletion> withMemo = new ArrayList<>();
+			ArrayList<Autocompletion> withoutMemo = new ArrayList<>();
+			assertEquals(parse(input, false, prune, withoutMemo), parse(input, true, prune, withMemo), input);
+			assertEquals(toString(withoutMemo), toString(withMemo), input);
+		}
+	}
+
+	@Test
+	public void testSameResult() {
+		String[] inputs = {"1;(22),333", "(1", "1;2,", "", "(12;3", "1;2;x", "12)", "(1),(22),(3)", "(1),(22),(3;"};
+		for(String input : inputs)
+			assertSameResult(input);
+
+		// all inputs of up to 5 characters
+		String alphabet = "1(),;";
+		ArrayList<String> inputsOfLength = new ArrayList<>();
+		inputsOfLength.add("");
+		for(int length = 1; length <= 5; length++) {
+			ArrayList<String> longer = new ArrayList<>();
+			for(String input : inputsOfLength)
+				for(char c : alphabet.toCharArray())
+					longer.add(input + c);
+			inputsOfLength = longer;
+			for(String input : inputsOfLength)
+				assertSameResult(input);
+		}
+	}
+
+	@Test
+	public void testCounters() throws ParseException {
+		// memoization only applies to the depth-first engine
+		// ';' fails after the first ITEM, whose trailing DIGITS, which failed at the ')', are skipped when ','
+		// is tried
+		RDParser parser = new RDParser(makeGrammar(), new Lexer("(1),(22),(3)"), ParsedNodeFactory.DEFAULT);
+		parser.setEngine(ParserEngine.DEPTH_FIRST);
+		parser.setMemoization(true);
+		DefaultParsedNode pn = parser.parse();
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		assertTrue(parser.getMemoHits() > 0);
+		assertTrue(parser.getMemoMisses() > 0);
+
+		// failures which could be the farthest one are searched again
+		parser = new RDParser(makeGrammar(), new Lexer("1,2"), ParsedNodeFactory.DEFAULT);
+		parser.setEngine(ParserEngine.DEPTH_FIRST);
+		parser.setMemoization(true);
+		pn = parser.parse();
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		assertEquals(0, parser.getMemoHits());
+		assertTrue(parser.getMemoMisses() > 0);
+
+		parser = new RDParser(makeGrammar(), new Lexer("(1),(22),(3)"), ParsedNodeFactory.DEFAULT);
+		parser.setEngine(ParserEngine.DEPTH_FIRST);
+		parser.setMemoization(true, 1);
+		pn = parser.parse();
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+
+		parser.setMemoization(false);
+		parser.parse();
+		assertEquals(0, parser.getMemoHits());
+		assertEquals(0, parser.getMemoMisses());
+
+		assertThrows(IllegalArgumentException.class, () -> new RDParser(makeGrammar(), new Lexer(""), ParsedNodeFactory.DEFAULT).setMemoization(true, 0));
+	}
+
+	@Test
+	public void testParser() throws ParseException {
+		ArrayList<String> sentencesParsed = new ArrayList<>();
+		Parser parser = new Parser();
+		parser.setMemoization(true);
+		parser.addParseStartListener(sentencesParsed::clear);
+		parser.defineSentence("{d:digit:+}.", pn -> null).onSuccessfulParsed(pn -> sentencesParsed.add(pn.getParsedString()));
+		parser.defineSentence("{d:digit:+}!", pn -> null);
+
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		ParsedNode pn = parser.parse("1.22!333.", autocompletions);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+		assertEquals("[1., 333.]", sentencesParsed.toString());
+
+		CompiledGrammar compiled = parser.compile();
+		assertTrue(compiled.isMemoization());
+		pn = compiled.parse("1.22!333.", null);
+		assertEquals(ParsingState.SUCCESSFUL, pn.getMatcher().state);
+	}
+}
@@ -13,6 +13,8 @@ import nlScript.ebnf.EBNFParsedNodeFactory;
 import nlScript.ebnf.Rule;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+
 import static nlScript.core.ParsingState.SUCCESSFUL;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -54,6 +56,45 @@ public class TestOr {
 		testFailure("s");
 	}
 
+	@Test
+	public void test05() {
+		// enough alternatives starting with a literal for a LiteralTrie, plus one which does not
+		EBNFCore ebnf = new EBNFCore();
+		String[] words = { "red", "green", "blue", "gray", "grey", "greenish", "black", "white", "bl" };
+		Named<?>[] options = new Named<?>[words.length + 1];
+		for(int i = 0; i < words.length; i++)
+			options[i] = ebnf.sequence(null, Terminal.literal(words[i]).withName()).withName("w" + i);
+		options[words.length] = ebnf.plus(null, Terminal.DIGIT.withName()).withName("digits");
+		Rule rule = ebnf.sequence("seq",
+				ebnf.or("word", options).withName("or"),
+				Terminal.literal(".").withName());
+		ebnf.compile(rule.getTarget());
+		BNF grammar = ebnf.getBNF();
+
+		String[] inputs = { "", "g", "gre", "gree", "green", "green.", "greenish.", "grey.", "bl.", "bla", "blu.", "12.", "x", "grx" };
+		for(String input : inputs) {
+			String[] withTrie = parse(grammar, input, true);
+			String[] withoutTrie = parse(grammar, input, false);
+			assertArrayEquals(withoutTrie, withTrie);
+		}
+		assertArrayEquals(new String[] { "END_OF_INPUT", "green", "gray", "grey", "greenish" }, parse(grammar, "gr", true));
+	}
+
+	private static String[] parse(BNF grammar, String input, boolean pruning) {
+		RDParser parser = new RDParser(grammar, new Lexer(input), EBNFParsedNodeFactory.INSTANCE);
+		parser.setPruning(pruning);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		ArrayList<String> ret = new ArrayList<>();
+		try {
+			ret.add(parser.parse(autocompletions).getMatcher().state.toString());
+		} catch(ParseException e) {
+			ret.add(e.getMessage());
+		}
+		for(Autocompletion a : autocompletions)
+			ret.add(a.getCompletion(Autocompletion.Purpose.FOR_INSERTION));
+		return ret.toArray(new String[0]);
+	}
+
 	private static void testSuccess(String input) throws ParseException {
 		BNF grammar = makeGrammar();
 
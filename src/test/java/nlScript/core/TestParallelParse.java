@@ -0,0 +1,81 @@
+package nlScript.core;
+
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestParallelParse {
+
+	private static Parser makeParser(List<String> events) {
+		Parser parser = new Parser();
+		parser.defineSentence("Set {name:[a-z]:+} to {value:int}.", pn -> null)
+				.onSuccessfulParsed(pn -> events.add(pn.getParsedString()));
+		parser.defineSentence("Print {value:int}.", pn -> null)
+				.onSuccessfulParsed(pn -> events.add(pn.getParsedString()));
+		parser.addParseStartListener(events::clear);
+		return parser;
+	}
+
+	private static String dump(DefaultParsedNode pn) {
+		StringBuilder sb = new StringBuilder();
+		dump(pn, "", sb);
+		return sb.toString();
+	}
+
+	private static void dump(DefaultParsedNode pn, String indent, StringBuilder sb) {
+		sb.append(indent).append(pn.getName()).append(" ").append(pn.getMatcher()).append("\n");
+		for(DefaultParsedNode child : pn.getChildren())
+			dump(child, indent + "  ", sb);
+	}
+
+	@Test
+	public void testSameResult() throws ParseException {
+		StringBuilder text = new StringBuilder("\n");
+		for(int i = 0; i < 500; i++) {
+			text.append(i % 2 == 0 ? "Set x to " + i + "." : "Print " + i + ".").append("\n");
+			if(i % 7 == 0)
+				text.append("\n");
+		}
+		ArrayList<String> events = new ArrayList<>();
+		Parser parser = makeParser(events);
+		String expected = dump(parser.parse(text.toString(), null));
+		List<String> expectedEvents = new ArrayList<>(events);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ParsedNode pn = parser.parseParallel(text.toString(), pool);
+		pool.shutdown();
+		assertEquals(expected, dump(pn));
+		assertEquals(expectedEvents, events);
+		assertEquals(500, pn.getChild(0).numChildren());
+	}
+
+	@Test
+	public void testEmpty() throws ParseException {
+		Parser parser = makeParser(new ArrayList<>());
+		ParsedNode pn = parser.parseParallel("");
+		assertEquals(dump(parser.parse("", null)), dump(pn));
+		assertEquals(ParsingState.NOT_PARSED, pn.getChild(0).getMatcher().state);
+
+		assertEquals(dump(parser.parse("\n\n", null)), dump(parser.parseParallel("\n\n")));
+
+		ParseException expected = assertThrows(ParseException.class, () -> parser.parse("  \n ", null));
+		ParseException exception = assertThrows(ParseException.class, () -> parser.parseParallel("  \n "));
+		assertEquals(expected.getMessage(), exception.getMessage());
+	}
+
+	@Test
+	public void testError() {
+		Parser parser = makeParser(new ArrayList<>());
+		String text = "Set a to 1.\nPrint x.\nPrint 2.";
+		ParseException expected = assertThrows(ParseException.class, () -> parser.parse(text, null));
+		ParseException exception = assertThrows(ParseException.class, () -> parser.parseParallel(text));
+		assertEquals(expected.getMessage(), exception.getMessage());
+	}
+}
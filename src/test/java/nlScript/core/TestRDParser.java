@@ -1,5 +1,6 @@
 package nlScript.core;
 
+import nlScript.ParseBudgetExceededException;
 import nlScript.ParseException;
 import nlScript.core.BNF;
 import nlScript.core.DefaultParsedNode;
@@ -11,11 +12,13 @@ import nlScript.core.Production;
 import nlScript.core.RDParser;
 import nlScript.core.Terminal;
 import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TestRDParser {
-	@Test
-	public void testParse() throws ParseException {
+	private static BNF makeGrammar() {
 		BNF bnf = new BNF();
 		bnf.addProduction(new Production(new NonTerminal("EXPR"),
 				new NonTerminal("TERM"), Terminal.literal("+"), new NonTerminal("EXPR")));
@@ -30,9 +33,102 @@ public class TestRDParser {
 
 		bnf.addProduction(new Production(BNF.ARTIFICIAL_START_SYMBOL,
 				new NonTerminal("EXPR"), BNF.ARTIFICIAL_STOP_SYMBOL));
+		return bnf;
+	}
+
+	@Test
+	public void testParse() throws ParseException {
+		BNF bnf = makeGrammar();
 
 		RDParser parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
 		DefaultParsedNode parsed = parser.parse();
 		assertEquals(ParsingState.SUCCESSFUL, parsed.getMatcher().state);
 	}
+
+	@Test
+	public void testParseBudget() throws ParseException {
+		BNF bnf = makeGrammar();
+		for(ParserEngine engine : new ParserEngine[] { ParserEngine.DEPTH_FIRST, ParserEngine.EARLEY }) {
+			RDParser parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
+			parser.setEngine(engine);
+			parser.setParseBudget(new ParseBudget(10, Integer.MAX_VALUE, Long.MAX_VALUE));
+			ParseBudgetExceededException e = assertThrows(ParseBudgetExceededException.class, parser::parse);
+			assertTrue(e.getReason().contains("expansions"));
+
+			parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
+			parser.setEngine(engine);
+			parser.setParseBudget(new ParseBudget(1000, 100, 10000));
+			assertEquals(ParsingState.SUCCESSFUL, parser.parse().getMatcher().state);
+		}
+
+		// the best partial result has the '*' after the '3' failing
+		RDParser parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
+		parser.setParseBudget(new ParseBudget(5, Integer.MAX_VALUE, Long.MAX_VALUE));
+		ParseBudgetExceededException e = assertThrows(ParseBudgetExceededException.class, parser::parse);
+		assertNotNull(e.getRoot());
+		assertEquals(1, e.getFailedTerminal().getMatcher().pos);
+
+		StringBuilder input = new StringBuilder("1");
+		for(int i = 0; i < 200000; i++)
+			input.append("+1");
+		parser = new RDParser(bnf, new Lexer(input), ParsedNodeFactory.DEFAULT);
+		parser.setParseBudget(new ParseBudget(Long.MAX_VALUE, Integer.MAX_VALUE, 1));
+		e = assertThrows(ParseBudgetExceededException.class, parser::parse);
+		assertTrue(e.getReason().contains("ms"));
+	}
+
+	@Test
+	public void testCancellation() throws Exception {
+		BNF bnf = makeGrammar();
+		for(ParserEngine engine : new ParserEngine[] { ParserEngine.DEPTH_FIRST, ParserEngine.EARLEY }) {
+			CancellationToken token = new CancellationToken();
+			RDParser parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
+			parser.setEngine(engine);
+			parser.setCancellationToken(token);
+			assertEquals(ParsingState.SUCCESSFUL, parser.parse().getMatcher().state);
+			token.cancel();
+			assertThrows(CancellationException.class, parser::parse);
+		}
+
+		// cancel a long parse from another thread
+		StringBuilder input = new StringBuilder("1");
+		for(int i = 0; i < 1000000; i++)
+			input.append("+1");
+		CancellationToken token = new CancellationToken();
+		RDParser parser = new RDParser(bnf, new Lexer(input), ParsedNodeFactory.DEFAULT);
+		parser.setCancellationToken(token);
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(10);
+			} catch(InterruptedException ignored) {
+			}
+			token.cancel();
+		});
+		canceller.start();
+		assertThrows(CancellationException.class, parser::parse);
+		canceller.join();
+	}
+
+	@Test
+	public void testParseStats() throws ParseException {
+		BNF bnf = makeGrammar();
+		for(ParserEngine engine : new ParserEngine[] { ParserEngine.DEPTH_FIRST, ParserEngine.EARLEY }) {
+			for(boolean memoize : new boolean[] { false, true }) {
+				ParseStats stats = new ParseStats();
+				RDParser parser = new RDParser(bnf, new Lexer("3+4*6+8"), ParsedNodeFactory.DEFAULT);
+				parser.setEngine(engine);
+				parser.setMemoization(memoize);
+				parser.setParseStats(stats);
+				parser.parse();
+
+				assertTrue(stats.getSequencesCreated() > 0);
+				assertTrue(stats.getMaxStackDepth() > 0);
+				assertTrue(stats.getTreeBuildingNanos() > 0);
+				assertTrue(stats.getTerminalAttempts().get(Terminal.literal("*")) > 0);
+				// '*' failed after the '3', it belongs to TERM's first alternative
+				assertTrue(stats.getFailedAlternatives().get(new NonTerminal("TERM")) > 0);
+				assertNull(stats.getFailedAlternatives().get(new NonTerminal("FACTOR")));
+			}
+		}
+	}
 }
@@ -0,0 +1,166 @@
+package nlScript.core;
+
+import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReparse {
+
+	private static Parser makeParser(List<String> events) {
+		Parser parser = new Parser();
+		parser.defineSentence("Set {name:[a-z]:+} to {value:int}.", pn -> null)
+				.onSuccessfulParsed(pn -> events.add(pn.getMatcher().pos + ": " + pn.getParsedString()));
+		parser.defineSentence("Print {value:int}.", pn -> null)
+				.onSuccessfulParsed(pn -> events.add(pn.getMatcher().pos + ": " + pn.getParsedString()));
+		parser.addParseStartListener(events::clear);
+		return parser;
+	}
+
+	private static String dump(DefaultParsedNode pn) {
+		StringBuilder sb = new StringBuilder();
+		dump(pn, "", sb);
+		return sb.toString();
+	}
+
+	private static void dump(DefaultParsedNode pn, String indent, StringBuilder sb) {
+		sb.append(indent).append(pn.getName()).append(" ").append(((ParsedNode) pn).getNthEntryInParent()).append(" ").append(pn.getMatcher()).append("\n");
+		for(DefaultParsedNode child : pn.getChildren())
+			dump(child, indent + "  ", sb);
+	}
+
+	private static List<String> toStrings(List<Autocompletion> autocompletions) {
+		return autocompletions.stream()
+				.map(ac -> ac.getCompletion(Autocompletion.Purpose.FOR_INSERTION))
+				.collect(Collectors.toList());
+	}
+
+	private static void testEdit(String text, int offset, int removedLen, String inserted, boolean autocomplete) throws ParseException {
+		String edited = text.substring(0, offset) + inserted + text.substring(offset + removedLen);
+		ArrayList<String> expectedEvents = new ArrayList<>();
+		ArrayList<Autocompletion> expectedAutocompletions = autocomplete ? new ArrayList<>() : null;
+		String expected = dump(makeParser(expectedEvents).parse(edited, expectedAutocompletions));
+
+		ArrayList<String> events = new ArrayList<>();
+		Parser parser = makeParser(events);
+		ParsedNode previous = parser.parse(text, null);
+		List<DefaultParsedNode> previousSentences = Arrays.asList(previous.getChild(0).getChildren());
+		int nPreviousEvents = events.size();
+
+		ArrayList<Autocompletion> autocompletions = autocomplete ? new ArrayList<>() : null;
+		ParsedNode reparsed = parser.reparse(previous, offset, removedLen, inserted, autocompletions);
+		assertEquals(expected, dump(reparsed));
+		if(autocomplete)
+			assertEquals(toStrings(expectedAutocompletions), toStrings(autocompletions));
+
+		// only the sentences which were parsed again notify their listeners, like in a parse of the entire text
+		List<String> reparsedEvents = new ArrayList<>();
+		for(DefaultParsedNode sentence : reparsed.getChild(0).getChildren()) {
+			if(previousSentences.stream().anyMatch(s -> s == sentence))
+				continue;
+			String prefix = sentence.getMatcher().pos + ": ";
+			expectedEvents.stream().filter(e -> e.startsWith(prefix)).forEach(reparsedEvents::add);
+		}
+		assertEquals(reparsedEvents, events.subList(nPreviousEvents, events.size()));
+	}
+
+	@Test
+	public void testSameResult() throws ParseException {
+		String text = "Set a to 1.\n\nPrint 2.\nSet b to 3.\n";
+		testEdit(text, 9, 1, "17", false);      // within the first sentence
+		testEdit(text, 19, 0, "0", false);      // within a middle sentence
+		testEdit(text, 21, 0, "Print 4.\n", false); // insert a line
+		testEdit(text, 12, 1, "", false);       // remove an empty line
+		testEdit(text, text.length(), 0, "Pri", true);
+		testEdit(text, text.length(), 0, "Print 5.", true);
+		testEdit("Set a to 1.\nPri", 15, 0, "nt", true);
+		testEdit("Set a to 1.\nPrint", 11, 6, "", true);
+	}
+
+	@Test
+	public void testRepeatedEdits() throws ParseException {
+		Parser parser = makeParser(new ArrayList<>());
+		String text = "Set a to 1.\nPrint 2.\nSet b to 3.";
+		ParsedNode reparsed = parser.parse(text, null);
+		// each edit splices the text of the previous one
+		for(int i = 0; i < 1100; i++) {
+			// replace the number in one of the lines, which changes its length every now and then
+			int line = i % 3;
+			int offset = 0;
+			for(int l = 0; l < line; l++)
+				offset = text.indexOf('\n', offset) + 1;
+			int numberStart = text.lastIndexOf(' ', text.indexOf('.', offset)) + 1;
+			int numberEnd = text.indexOf('.', offset);
+			String number = Integer.toString(i);
+			reparsed = parser.reparse(reparsed, numberStart, numberEnd - numberStart, number);
+			text = text.substring(0, numberStart) + number + text.substring(numberEnd);
+			assertEquals(text, reparsed.getChild(0).getParsedString());
+			if(i % 100 == 0)
+				assertEquals(dump(parser.parse(text, null)), dump(reparsed));
+		}
+	}
+
+	@Test
+	public void testReuse() throws ParseException {
+		Parser parser = makeParser(new ArrayList<>());
+		String text = "Set a to 1.\nPrint 2.\nSet b to 3.";
+		ParsedNode previous = parser.parse(text, null);
+		DefaultParsedNode first = previous.getChild(0).getChild(0);
+		DefaultParsedNode last = previous.getChild(0).getChild(2);
+		ParsedNode reparsed = parser.reparse(previous, 18, 1, "4");
+		assertSame(first, reparsed.getChild(0).getChild(0));
+		assertSame(last, reparsed.getChild(0).getChild(2));
+		assertEquals("Print 4.", reparsed.getChild(0).getChild(1).getParsedString());
+	}
+
+	@Test
+	public void testListenerPositions() throws ParseException {
+		ArrayList<Integer> positions = new ArrayList<>();
+		ArrayList<DefaultParsedNode> nodes = new ArrayList<>();
+		Parser parser = new Parser();
+		parser.defineSentence("Apply {filter:[a-z]:+} filter.", pn -> null).onSuccessfulParsed(pn -> {
+			positions.add(pn.getMatcher().pos);
+			nodes.add(pn);
+		});
+		parser.addParseStartListener(positions::clear);
+		parser.addParseStartListener(nodes::clear);
+		String text = "Apply median filter.\nApply median filter.\nApply median filter.";
+		ParsedNode previous = parser.parse(text, null);
+		assertEquals(Arrays.asList(0, 21, 42), positions);
+
+		// edit the middle line: only the new middle sentence notifies its listener, the others keep theirs
+		ParsedNode reparsed = parser.reparse(previous, 27, 6, "gauss");
+		assertEquals(Arrays.asList(0, 21, 42, 21), positions);
+		assertSame(reparsed.getChild(0).getChild(0), nodes.get(0));
+		assertSame(reparsed.getChild(0).getChild(1), nodes.get(3));
+		assertSame(reparsed.getChild(0).getChild(2), nodes.get(2));
+		// the following sentence was moved
+		assertEquals(41, nodes.get(2).getMatcher().pos);
+		assertEquals("Apply median filter.", nodes.get(2).getParsedString());
+	}
+
+	@Test
+	public void testError() throws ParseException {
+		ArrayList<String> events = new ArrayList<>();
+		Parser parser = makeParser(events);
+		String text = "Set a to 1.\nPrint 2.\n";
+		ParsedNode previous = parser.parse(text, null);
+		String expected = null;
+		try {
+			parser.parse("Set a to 1.\nPrint x.\n", null);
+		} catch(ParseException e) {
+			expected = e.getMessage();
+		}
+		assertNotNull(expected);
+
+		ParseException exception = assertThrows(ParseException.class, () -> parser.reparse(previous, 18, 1, "x"));
+		assertEquals(expected, exception.getMessage());
+	}
+}
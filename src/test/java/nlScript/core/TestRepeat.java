@@ -1,6 +1,8 @@
 package nlScript.core;
 
 import nlScript.ParseException;
+import nlScript.ParsedNode;
+import nlScript.Parser;
 import nlScript.core.BNF;
 import nlScript.core.DefaultParsedNode;
 import nlScript.core.GraphViz;
@@ -13,6 +15,8 @@ import nlScript.ebnf.EBNFParsedNodeFactory;
 import nlScript.ebnf.Rule;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+
 import static nlScript.core.ParsingState.SUCCESSFUL;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -79,6 +83,48 @@ public class TestRepeat {
 		testFailure(g, "s");
 	}
 
+	@Test
+	public void test06() throws ParseException {
+		BNF g = makeGrammar(2, 1000000);
+		assertEquals(2, g.getProductions((NonTerminal) g.getSymbol("repeat")).size());
+		testFailure(g, "");
+		testFailure(g, "1a");
+		testSuccess(g, "1a2a");
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < 300; i++)
+			input.append(i % 10).append('a');
+		testSuccess(g, input.toString());
+	}
+
+	@Test
+	public void test07() {
+		for(ParserEngine engine : new ParserEngine[] { ParserEngine.DEPTH_FIRST, ParserEngine.EARLEY }) {
+			BNF g = makeGrammar(1, 3);
+			RDParser parser = new RDParser(g, new Lexer("1a2a3a4a"), EBNFParsedNodeFactory.INSTANCE);
+			parser.setEngine(engine);
+			ParseException e = assertThrows(ParseException.class, parser::parse);
+			assertEquals(6, e.getFailedTerminal().getMatcher().pos);
+		}
+	}
+
+	@Test
+	public void testGreedyEntries() throws ParseException {
+		// each entry matches as much as possible, like with Star and Plus
+		Parser parser = new Parser();
+		parser.defineSentence("Take {v:int:1-3} steps.", pn -> pn.evaluate("v"));
+		Object[] evaluated = (Object[]) parser.parse("Take 12 steps.", null).evaluate();
+		assertArrayEquals(new Object[] {12}, (Object[]) evaluated[0]);
+
+		// in an incomplete line, only the entries up to the end of the input are created
+		parser = new Parser();
+		parser.defineSentence("Say {v:[ab]:3}.", null);
+		ArrayList<Autocompletion> autocompletions = new ArrayList<>();
+		ParsedNode pn = parser.parse("Say ", autocompletions);
+		assertEquals(1, pn.getChild(0).getChild(0).getChild("v").numChildren());
+		assertEquals(1, autocompletions.size());
+		assertEquals("${v}", autocompletions.get(0).getCompletion(Autocompletion.Purpose.FOR_INSERTION));
+	}
+
 	private static void testSuccess(BNF grammar, String input) throws ParseException {
 		Lexer l = new Lexer(input);
 		RDParser test = new RDParser(grammar, l, EBNFParsedNodeFactory.INSTANCE);